@@ -19,30 +19,65 @@ import static com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manu
 import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
 
+import javax.net.ssl.SSLContext;
 import javax.xml.ws.WebServiceException;
 import javax.xml.ws.soap.SOAPFaultException;
 
+import org.apache.cxf.Bus;
+
 import com.evolveum.midpoint.prism.PrismObject;
 import com.evolveum.midpoint.provisioning.ucf.api.GenericFrameworkException;
 import com.evolveum.midpoint.provisioning.ucf.api.ManagedConnector;
 import com.evolveum.midpoint.provisioning.ucf.api.ManagedConnectorConfiguration;
 import com.evolveum.midpoint.provisioning.ucf.api.Operation;
 import com.evolveum.midpoint.provisioning.ucf.api.connectors.AbstractManualConnectorInstance;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.CompiledTemplater;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.FileTemplateRepository;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.PrismFormat;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.TemplateContext;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.TemplateRepository;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.Templater;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.TemplaterVelocityImpl;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io.Ticket;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.ClusterStatusCache;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.FileSharedStatusStore;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.NegativeCache;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.PollingScheduler;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.PushedStatusTable;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.SingleFlight;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.StatusCache;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.StatusPushListener;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.TicketJournal;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ticket.TicketFingerprints;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ticket.TicketOutbox;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.AdaptiveConcurrencyLimiter;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.AsyncDispatcher;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.CapacityExceededException;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.CircuitBreaker;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ConfigurableServiceFactory;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ConnectorAttributeUtils;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ItsmAttributes;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.MessageType;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.RequestHedging;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.RetryPolicy;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ServicePool;
 import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TokenBucket;
 import com.evolveum.midpoint.schema.constants.ConnectorTestOperation;
 import com.evolveum.midpoint.schema.processor.ObjectClassComplexTypeDefinition;
 import com.evolveum.midpoint.schema.processor.ResourceAttribute;
@@ -80,11 +115,52 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 	
 	private static ResourceBundle messages = ResourceBundle.getBundle("ItsmMessages");
 
+	private static final String OPERATION_QUERY_STATUS_BATCH = ItsmManualConnector.class.getName() + ".queryOperationStatusBatch";
+
 	private ItsmManualConnectorConfiguration configuration;
 
 	private Templater templater; // thread-safe templating impl
 
-	private IntegrationEndpoint itsmService; // not thread-safe, synchronize access
+	private FileTemplateRepository templateFiles; // null if templates are taken from configuration only
+
+	// replaced on reconnect while calls may be running, null after dispose
+
+	private volatile Bus itsmBus; // http transport shared by all proxies
+
+	private volatile ServicePool<IntegrationEndpoint> itsmServices; // proxies are not thread-safe, borrow one per call
+
+	private volatile AsyncDispatcher asyncDispatcher; // thread-safe, bounds in-flight async requests
+
+	private CircuitBreaker circuitBreaker; // thread-safe
+
+	private RetryPolicy retryPolicy; // for idempotent calls only
+
+	private AdaptiveConcurrencyLimiter concurrencyLimiter; // thread-safe, null if not enabled
+
+	private TokenBucket rateLimiter; // thread-safe, shared per profile, null if not enabled
+
+	private RequestHedging requestHedging; // thread-safe, GetEntry only, null if not enabled
+
+	// concurrent status queries of the same ticket share one GetEntry call
+	private final SingleFlight<String, IntegrationOperationOutput> statusQueries = new SingleFlight<>();
+
+	private StatusCache statusCache; // thread-safe, null if not enabled
+
+	private PollingScheduler pollingScheduler; // thread-safe, null if not enabled
+
+	private TicketJournal ticketJournal; // thread-safe, null if not enabled
+
+	private PushedStatusTable pushedStatuses; // thread-safe, null if not enabled
+
+	private StatusPushListener pushListener;
+
+	private ClusterStatusCache clusterStatuses; // thread-safe, null if not enabled
+
+	private NegativeCache negativeCache; // thread-safe, null if not enabled
+
+	private TicketOutbox ticketOutbox; // thread-safe, null if not enabled
+
+	private TicketFingerprints ticketFingerprints; // thread-safe, null if not enabled
 
 	@ManagedConnectorConfiguration
 	public ItsmManualConnectorConfiguration getConfiguration() {
@@ -105,8 +181,10 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 		
 		TemplateContext templateContext = templateContextOperation(msg("operation.create"));
 
-		List<String> attributes = PrismFormat.attributesList(object);
-		templateContext.setAccountChanges(String.join("\n", attributes));
+		StringBuilder accountChanges = new StringBuilder(1024);
+		PrismFormat.appendAttributes(accountChanges, object, maxFormattedValues(), 
+				configuration.getMaxDetailedDescriptionLength());
+		templateContext.setAccountChanges(accountChanges);
 		
 		return sendTicket(templateContext, result);
 	}
@@ -122,14 +200,76 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 									GenericFrameworkException, SchemaException, ObjectAlreadyExistsException, 
 									ConfigurationException {
 
-		TemplateContext templateContext = templateContextOperation(msg("operation.modify"));
-		
-		templateContext.setIdentifier(PrismFormat.compoundIdentifier(identifiers));
-		templateContext.setAccountChanges(PrismFormat.operations(changes).toString());
-		
+		String identifier = PrismFormat.compoundIdentifier(identifiers);
+		TicketOutbox outbox = ticketOutbox;
+		if(outbox != null && configuration.getModifyCoalescingWindow() > 0) {
+			return queueModifyTicket(outbox, identifier, changes, result);
+		}
+
+		TemplateContext templateContext = templateContextModify(identifier, formatOperations(changes));
 		return sendTicket(templateContext, result);
 	}
 
+	/**
+	 * Queues the modification in the outbox, merged with modifications of the same account queued before.
+	 *
+	 * @return local reference
+	 */
+	private String queueModifyTicket(TicketOutbox outbox, String identifier, Collection<Operation> changes,
+			OperationResult result) throws CommunicationException {
+
+		String accountChanges = formatOperations(changes).toString();
+		String operation = msg("operation.modify");
+
+		TicketFingerprints fingerprints = ticketFingerprints;
+		String fingerprint = null;
+		if(fingerprints != null) {
+			fingerprint = TicketFingerprints.fingerprint(
+					Collections.singletonMap("accountChanges", accountChanges), operation, identifier);
+			String createdTicket = fingerprints.createdTicket(fingerprint);
+			if(createdTicket != null) {
+				LOGGER.debug("Same changes were queued recently in {}, not queueing them again", createdTicket);
+				fillResultOnKnownStatus(result, "duplicate", TicketStatus.NEW);
+				return createdTicket;
+			}
+		}
+
+		String ticketId;
+		try {
+			ticketId = outbox.enqueue(identifier, accountChanges, operation,
+					configuration.getModifyCoalescingWindow(),
+					merged -> renderTicket(templateContextModify(identifier, merged)).getAttributes());
+			fillResultOnKnownStatus(result, "outbox", TicketStatus.NEW);
+		} catch (IOException e) {
+			LOGGER.error("Couldn't store ticket in the outbox, sending it directly.", e);
+			ticketId = createIncident(renderTicket(templateContextModify(identifier, accountChanges)), operation, result);
+		}
+		if(fingerprints != null && ticketId != null) {
+			fingerprints.ticketCreated(fingerprint, ticketId);
+		}
+		return ticketId;
+	}
+
+	private TemplateContext templateContextModify(String identifier, CharSequence accountChanges) {
+		TemplateContext templateContext = templateContextOperation(msg("operation.modify"));
+		templateContext.setIdentifier(identifier);
+		templateContext.setAccountChanges(accountChanges);
+		return templateContext;
+	}
+
+	private StringBuilder formatOperations(Collection<Operation> changes) {
+		StringBuilder accountChanges = new StringBuilder(PrismFormat.estimatedLength(changes));
+		Integer parallelThreshold = configuration.getParallelFormattingThreshold();
+		if(parallelThreshold != null) {
+			PrismFormat.appendOperations(accountChanges, changes, maxFormattedValues(), 
+					configuration.getMaxDetailedDescriptionLength(), parallelThreshold);
+		} else {
+			PrismFormat.appendOperations(accountChanges, changes, maxFormattedValues(), 
+					configuration.getMaxDetailedDescriptionLength());
+		}
+		return accountChanges;
+	}
+
 	@Override
 	protected String createTicketDelete(
 			
@@ -148,6 +288,286 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 	public OperationResultStatus queryOperationStatus(
 			String ticketId, OperationResult parentResult) throws ObjectNotFoundException, SchemaException {
 
+		if(TicketOutbox.isLocalReference(ticketId)) {
+			TicketOutbox.Delivery delivery = outboxDelivery(ticketId, parentResult);
+			if(delivery == null || delivery.getIncidentNumber() == null) {
+				return outboxStatus(delivery);
+			}
+			return queryIncidentStatus(delivery.getIncidentNumber(), parentResult);
+		}
+		return queryIncidentStatus(ticketId, parentResult);
+	}
+
+	private OperationResultStatus queryIncidentStatus(String ticketId, OperationResult parentResult) {
+
+		TicketStatus knownStatus = knownStatus(ticketId);
+		if(knownStatus != null) {
+			fillResultOnKnownStatus(parentResult, "known", knownStatus);
+			return mapTicketStatus(knownStatus);
+		}
+		if(isSuppressed(ticketId, parentResult)) {
+			return mapTicketStatus(null);
+		}
+
+		TicketStatus ticketStatus = null;
+		try {
+			// the status is recorded once per call, not once per caller sharing it
+			IntegrationOperationOutput response = statusQueries.execute(ticketId, () -> {
+				IntegrationOperationOutput loaded = getEntryCall(getEntryRequest(ticketId));
+				statusLoaded(ticketId, ticketStatusOf(loaded));
+				return loaded;
+			});
+			ticketStatus = ticketStatusFrom(response, parentResult);
+		} catch (CommunicationException e) {
+			throw new IllegalStateException(e);
+		}
+		
+		return mapTicketStatus(ticketStatus);
+	}
+
+	/**
+	 * Non-blocking variant of {@link #queryOperationStatus(String, OperationResult)}, no thread
+	 * waits for the Itsm response. The parent result is filled when the returned future completes,
+	 * it must not be used concurrently before that.
+	 */
+	public CompletableFuture<OperationResultStatus> queryOperationStatusAsync(
+			String ticketId, OperationResult parentResult) {
+
+		if(TicketOutbox.isLocalReference(ticketId)) {
+			TicketOutbox.Delivery delivery = outboxDelivery(ticketId, parentResult);
+			if(delivery == null || delivery.getIncidentNumber() == null) {
+				return CompletableFuture.completedFuture(outboxStatus(delivery));
+			}
+			return queryIncidentStatusAsync(delivery.getIncidentNumber(), parentResult);
+		}
+		return queryIncidentStatusAsync(ticketId, parentResult);
+	}
+
+	private CompletableFuture<OperationResultStatus> queryIncidentStatusAsync(
+			String ticketId, OperationResult parentResult) {
+
+		TicketStatus knownStatus = knownStatus(ticketId);
+		if(knownStatus != null) {
+			fillResultOnKnownStatus(parentResult, "known", knownStatus);
+			return CompletableFuture.completedFuture(mapTicketStatus(knownStatus));
+		}
+		if(isSuppressed(ticketId, parentResult)) {
+			return CompletableFuture.completedFuture(mapTicketStatus(null));
+		}
+
+		return ioCallAsync(getEntryRequest(ticketId))
+				.thenApply(response -> {
+					TicketStatus ticketStatus = ticketStatusFrom(response, parentResult);
+					statusLoaded(ticketId, ticketStatus);
+					return mapTicketStatus(ticketStatus);
+				});
+	}
+
+	/**
+	 * Queries status of many tickets. Queries are sent in parallel through the async path,
+	 * keeping enough of them in flight to saturate it, and each status is passed to the consumer
+	 * as soon as it is known. The consumer is called from the calling thread only.
+	 *
+	 * Each batch of tickets gets its own subresult with its duration. Tickets whose status can't be
+	 * determined, e.g. because of communication error, are not passed to the consumer, they are
+	 * recorded as errors in the batch result.
+	 */
+	public void queryOperationStatuses(Collection<String> ticketIds, OperationResult parentResult,
+			BiConsumer<String, OperationResultStatus> statusConsumer) {
+
+		// keep the dispatcher queue filled, but do not flood it
+		int maxOutstanding = configuration.getAsyncMaxInFlight() * 2;
+		BlockingQueue<BulkQuery> completed = new LinkedBlockingQueue<>();
+		int outstanding = 0;
+		BulkBatch batch = null;
+
+		for(String ticketId : ticketIds) {
+			if(batch == null || batch.submitted == configuration.getBulkBatchSize()) {
+				closeBatch(batch);
+				batch = new BulkBatch(parentResult.createSubresult(OPERATION_QUERY_STATUS_BATCH));
+			}
+			while(outstanding >= maxOutstanding) {
+				deliver(takeCompleted(completed), statusConsumer);
+				outstanding--;
+			}
+
+			BulkQuery query = new BulkQuery(ticketId, batch);
+			batch.submitted++;
+			batch.remaining++;
+			outstanding++;
+			queryOperationStatusAsync(ticketId, query.result).whenComplete((status, failure) -> {
+				query.status = status;
+				query.failure = failure instanceof CompletionException ? failure.getCause() : failure;
+				completed.add(query);
+			});
+		}
+
+		closeBatch(batch);
+		while(outstanding > 0) {
+			deliver(takeCompleted(completed), statusConsumer);
+			outstanding--;
+		}
+	}
+
+	private void closeBatch(BulkBatch batch) {
+		if(batch != null) {
+			batch.closed = true;
+			finishIfDone(batch);
+		}
+	}
+
+	private void finishIfDone(BulkBatch batch) {
+		if( ! batch.closed || batch.remaining > 0) {
+			return;
+		}
+		long duration = System.currentTimeMillis() - batch.start;
+		batch.result.addParam("tickets", batch.submitted);
+		batch.result.addReturn("durationMillis", duration);
+		batch.result.computeStatus();
+		LOGGER.debug("Status of {} tickets queried in {} ms", batch.submitted, duration);
+	}
+
+	private BulkQuery takeCompleted(BlockingQueue<BulkQuery> completed) {
+		try {
+			return completed.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for ticket status", e);
+		}
+	}
+
+	private void deliver(BulkQuery query, BiConsumer<String, OperationResultStatus> statusConsumer) {
+		BulkBatch batch = query.batch;
+		if(query.failure != null) {
+			query.result.recordFatalError("Couldn't query status of ticket " + query.ticketId, query.failure);
+			batch.result.addSubresult(query.result);
+		} else {
+			if(query.status == OperationResultStatus.FATAL_ERROR || query.status == OperationResultStatus.UNKNOWN) {
+				batch.result.addSubresult(query.result);
+			}
+			statusConsumer.accept(query.ticketId, query.status);
+		}
+
+		batch.remaining--;
+		finishIfDone(batch);
+	}
+
+	/**
+	 * Status known without asking the service, null if the service must be asked.
+	 */
+	private TicketStatus knownStatus(String ticketId) {
+		TicketStatus knownStatus = null;
+		if(pushedStatuses != null) {
+			knownStatus = pushedStatuses.recentStatus(ticketId);
+		}
+		if(knownStatus == null && statusCache != null) {
+			knownStatus = statusCache.get(ticketId);
+		}
+		if(knownStatus == null && pollingScheduler != null) {
+			knownStatus = pollingScheduler.statusUntilNextPoll(ticketId);
+		}
+		if(knownStatus == null && ticketJournal != null) {
+			// final status survives restarts, other statuses must be polled again
+			TicketStatus journaled = ticketJournal.lastStatus(ticketId);
+			if(journaled != null && journaled.isFinal()) {
+				knownStatus = journaled;
+			}
+		}
+		if(knownStatus == null && clusterStatuses != null && ! clusterStatuses.isPreferredNode(ticketId)) {
+			// poll here only if no node has published the status recently
+			knownStatus = clusterStatuses.sharedStatus(ticketId);
+		}
+		return knownStatus;
+	}
+
+	/**
+	 * Fills the result if the ticket has no incident number yet.
+	 *
+	 * @return delivery of the ticket queued in the outbox, null if not known
+	 */
+	private TicketOutbox.Delivery outboxDelivery(String localReference, OperationResult parentResult) {
+		TicketOutbox outbox = ticketOutbox;
+		TicketOutbox.Delivery delivery = outbox != null ? outbox.delivery(localReference) : null;
+		if(delivery == null) {
+			OperationResult subresult = new OperationResult("Itsm integration operation result - error");
+			subresult.setStatus(OperationResultStatus.FATAL_ERROR);
+			subresult.setMessage("Ticket " + localReference + " is not known in the outbox");
+			parentResult.addSubresult(subresult);
+		} else if(delivery.getIncidentNumber() == null) {
+			OperationResult subresult = new OperationResult("Itsm integration operation result - outbox");
+			subresult.setStatus(outboxStatus(delivery));
+			if(delivery.isFailed()) {
+				subresult.setMessage("Ticket " + localReference + " was rejected by Itsm");
+			}
+			parentResult.addSubresult(subresult);
+		}
+		return delivery;
+	}
+
+	private OperationResultStatus outboxStatus(TicketOutbox.Delivery delivery) {
+		if(delivery == null || delivery.isFailed()) {
+			return OperationResultStatus.FATAL_ERROR;
+		}
+		// still queued
+		return OperationResultStatus.IN_PROGRESS;
+	}
+
+	/**
+	 * Ticket whose recent queries failed is not queried again until its re-check time.
+	 */
+	private boolean isSuppressed(String ticketId, OperationResult parentResult) {
+		if(negativeCache == null) {
+			return false;
+		}
+		Long suppressedUntil = negativeCache.suppressedUntil(ticketId);
+		if(suppressedUntil == null) {
+			return false;
+		}
+		OperationResult subresult = new OperationResult("Itsm integration operation result - error");
+		subresult.setStatus(OperationResultStatus.FATAL_ERROR);
+		subresult.setMessage("Status of ticket " + ticketId + " could not be determined recently,"
+				+ " it will be checked again after " + new Date(suppressedUntil));
+		parentResult.addSubresult(subresult);
+		return true;
+	}
+
+	private void statusPushed(String ticketId, TicketStatus ticketStatus) {
+		PushedStatusTable pushed = pushedStatuses;
+		if(pushed != null) {
+			pushed.pushed(ticketId, ticketStatus);
+			statusLoaded(ticketId, ticketStatus);
+		}
+	}
+
+	/**
+	 * Called with every status received from the service, null if the ticket status is unknown.
+	 */
+	private void statusLoaded(String ticketId, TicketStatus ticketStatus) {
+		if(negativeCache != null) {
+			if(ticketStatus == null) {
+				negativeCache.failed(ticketId);
+			} else {
+				negativeCache.succeeded(ticketId);
+			}
+		}
+		if(ticketStatus == null) {
+			return;
+		}
+		if(statusCache != null) {
+			statusCache.put(ticketId, ticketStatus);
+		}
+		if(pollingScheduler != null) {
+			pollingScheduler.polled(ticketId, ticketStatus);
+		}
+		if(ticketJournal != null) {
+			ticketJournal.statusSeen(ticketId, ticketStatus);
+		}
+		if(clusterStatuses != null) {
+			clusterStatuses.publish(ticketId, ticketStatus);
+		}
+	}
+
+	private IntegrationOperationInput getEntryRequest(String ticketId) {
 		// create request from ticket
 		IntegrationOperationInput queryRequest = new IntegrationOperationInput();
 		queryRequest.setMessageType(MessageType.GET_ENTRY.value());
@@ -156,22 +576,28 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 		AttributesType attrs = new AttributesType();
 		attrs.getAttribute().add(ConnectorAttributeUtils.wsAttribute(ItsmAttributes.INCIDENT_NUMBER, ticketId));
 		queryRequest.setAttributes(attrs);
-		
-		TicketStatus ticketStatus = null;
-		try {
-			IntegrationOperationOutput response = ioCall(queryRequest);
-			if(response.getStatus() == StatusEnumType.ERROR) {
-				fillResultOnError(parentResult, response);
-			} else {
-				String wsTicketStatus = getAttributeValue(ItsmAttributes.INCIDENT_STATUS, response.getAttributes().getAttribute());
-				ticketStatus = ConnectorAttributeUtils.fromWsCode(wsTicketStatus);
-				fillResultOnSuccess(parentResult, response, ticketStatus);
-			}
-		} catch (CommunicationException e) {
-			throw new IllegalStateException(e);
+		return queryRequest;
+	}
+
+	private TicketStatus ticketStatusFrom(IntegrationOperationOutput response, OperationResult parentResult) {
+		TicketStatus ticketStatus = ticketStatusOf(response);
+		if(response.getStatus() == StatusEnumType.ERROR) {
+			fillResultOnError(parentResult, response);
+		} else {
+			fillResultOnSuccess(parentResult, response, ticketStatus);
 		}
-		
-		return mapTicketStatus(ticketStatus);
+		return ticketStatus;
+	}
+
+	/**
+	 * @return status of the ticket, null if the service responded with ERROR or an unknown status
+	 */
+	private TicketStatus ticketStatusOf(IntegrationOperationOutput response) {
+		if(response.getStatus() == StatusEnumType.ERROR) {
+			return null;
+		}
+		String wsTicketStatus = getAttributeValue(ItsmAttributes.INCIDENT_STATUS, response.getAttributes().getAttribute());
+		return ConnectorAttributeUtils.fromWsCode(wsTicketStatus);
 	}
 	
 	@Override
@@ -184,19 +610,231 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 			throw new IllegalStateException("Configuration is not valid", e);
 		}
 	
-		ConfigurableServiceFactory.closeQuietly(itsmService);
+		closeComponents();
+
+		// shared by the synchronous and asynchronous calls
+		concurrencyLimiter = null;
+		if(Boolean.TRUE.equals(configuration.getAdaptiveConcurrency())) {
+			// more concurrent calls than pooled clients would just wait for the pool
+			concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+					configuration.getAdaptiveConcurrencyInitialLimit(), 1, configuration.getPoolMaxSize());
+		}
+		rateLimiter = null;
+		if(configuration.getRateLimit() != null) {
+			rateLimiter = TokenBucket.shared(
+					configuration.getWsUrl(), configuration.getProfileName(), configuration.getRateLimit());
+		}
+
+		// calls running during reconnect keep the old clients, which are closed only after the new ones
+		// are published, so no call sees a missing pool
+		Bus oldBus = itsmBus;
+		ServicePool<IntegrationEndpoint> oldServices = itsmServices;
+		AsyncDispatcher oldDispatcher = asyncDispatcher;
+
+		LOGGER.debug("Creating Itsm web service pool");
+		Bus bus = ConfigurableServiceFactory.createBus(configuration);
+		ServicePool<IntegrationEndpoint> services = new ServicePool<>(
+				() -> ConfigurableServiceFactory.createService(IntegrationEndpoint.class, configuration, bus),
+				ConfigurableServiceFactory::closeQuietly,
+				configuration.getPoolMaxSize(),
+				configuration.getPoolMaxIdleTime(),
+				configuration.getPoolBorrowTimeout());
+		AsyncDispatcher dispatcher = new AsyncDispatcher(
+				ConfigurableServiceFactory.createService(IntegrationEndpoint.class, configuration, bus),
+				configuration.getAsyncMaxInFlight(),
+				configuration.getAsyncMaxPending(),
+				rateLimiter,
+				concurrencyLimiter);
+		itsmBus = bus;
+		itsmServices = services;
+		asyncDispatcher = dispatcher;
+		closeWebServices(oldBus, oldServices, oldDispatcher);
+
+		circuitBreaker = new CircuitBreaker(
+				configuration.getCircuitBreakerWindowSize(),
+				configuration.getCircuitBreakerMinimumCalls(),
+				configuration.getCircuitBreakerFailureRate(),
+				configuration.getCircuitBreakerOpenTime());
+		retryPolicy = new RetryPolicy(
+				configuration.getRetryMaxAttempts(),
+				configuration.getRetryInitialBackoff(),
+				configuration.getRetryMaxBackoff());
 
-		LOGGER.debug("Creating Itsm web service");
-		itsmService = ConfigurableServiceFactory.createService(IntegrationEndpoint.class, configuration);
+		requestHedging = null;
+		if(Boolean.TRUE.equals(configuration.getHedging())) {
+			requestHedging = new RequestHedging(configuration.getHedgingPercentile(), configuration.getHedgingMinDelay());
+		}
+
+		statusCache = null;
+		if(configuration.getStatusCacheSize() > 0) {
+			statusCache = new StatusCache(configuration.getStatusCacheSize(), configuration.getStatusCacheTtl());
+		}
+		pollingScheduler = null;
+		if(Boolean.TRUE.equals(configuration.getAdaptivePolling())) {
+			pollingScheduler = new PollingScheduler(
+					configuration.getPollingMinInterval(), configuration.getPollingMaxInterval());
+		}
+
+		ticketJournal = openJournal();
+
+		clusterStatuses = createClusterStatusCache();
+
+		ticketOutbox = null;
+		if(configuration.getOutboxDirectoryPath() != null) {
+			try {
+				ticketOutbox = TicketOutbox.open(configuration.getOutboxDirectoryPath(), 
+						this::sendQueuedTicket, configuration.getOutboxSendInterval());
+			} catch (IOException e) {
+				// sending directly would leave the queued tickets unsent and their references unknown
+				throw new IllegalStateException("Couldn't open ticket outbox: " + e.getMessage(), e);
+			}
+		}
 
-		this.templater = new TemplaterVelocityImpl(configuration);
+		ticketFingerprints = null;
+		if(configuration.getDeduplicationWindow() > 0) {
+			ticketFingerprints = new TicketFingerprints(configuration.getDeduplicationWindow());
+		}
+
+		negativeCache = null;
+		if(configuration.getNegativeCacheInitialInterval() > 0) {
+			negativeCache = new NegativeCache(
+					configuration.getNegativeCacheInitialInterval(), configuration.getNegativeCacheMaxInterval());
+		}
+
+		pushedStatuses = null;
+		if(configuration.getPushListenerPort() != null) {
+			pushedStatuses = new PushedStatusTable(configuration.getPushStatusMaxAge());
+			try {
+				pushListener = StatusPushListener.start(pushListenerAddress(), pushSslContext(),
+						configuration.getPushUsername(), configuration.getPushPassword(), this::statusPushed);
+			} catch (ConfigurationException e) {
+				// an unresolvable address won't start working by polling, unlike a port in use
+				throw new IllegalStateException(e.getMessage(), e);
+			} catch (IOException e) {
+				LOGGER.error("Couldn't start status push listener on port {}, statuses will be polled only.", 
+						configuration.getPushListenerPort(), e);
+				pushedStatuses = null;
+			}
+		}
+
+		TemplateRepository templates = configuration;
+		if(configuration.getTemplateDirectoryPath() != null) {
+			try {
+				templateFiles = FileTemplateRepository.open(configuration.getTemplateDirectoryPath(), configuration);
+				templates = templateFiles;
+			} catch (IOException e) {
+				LOGGER.error("Couldn't read template directory, using templates from configuration.", e);
+			}
+		}
+		// simple templates are rendered without velocity
+		this.templater = new CompiledTemplater(templates, new TemplaterVelocityImpl(templates));
 		result.recordSuccess();
 	}
 	
 	@Override
 	public synchronized void dispose() {
-		ConfigurableServiceFactory.closeQuietly(itsmService);
-		itsmService = null;
+		closeComponents();
+
+		Bus bus = itsmBus;
+		ServicePool<IntegrationEndpoint> services = itsmServices;
+		AsyncDispatcher dispatcher = asyncDispatcher;
+		itsmBus = null;
+		itsmServices = null;
+		asyncDispatcher = null;
+		closeWebServices(bus, services, dispatcher);
+	}
+
+	private TicketJournal openJournal() {
+		if(configuration.getJournalBasedirPath() == null) {
+			return null;
+		}
+		// resources calling different services or profiles must not share the journal
+		String journalName = "itsm-tickets-" 
+				+ Integer.toHexString((configuration.getWsUrl() + "#" + configuration.getProfileName()).hashCode())
+				+ ".journal";
+		try {
+			return TicketJournal.open(configuration.getJournalBasedirPath().resolve(journalName));
+		} catch (IOException e) {
+			LOGGER.error("Couldn't open ticket journal, continuing without it.", e);
+			return null;
+		}
+	}
+
+	private InetSocketAddress pushListenerAddress() {
+		if(isBlank(configuration.getPushListenerAddress())) {
+			return new InetSocketAddress(configuration.getPushListenerPort());
+		}
+		return new InetSocketAddress(configuration.getPushListenerAddress(), configuration.getPushListenerPort());
+	}
+
+	private SSLContext pushSslContext() throws IOException {
+		if(configuration.getPushKeyStorePath() == null) {
+			return null;
+		}
+		return StatusPushListener.sslContext(configuration.getPushKeyStorePath(), configuration.getPushKeyStorePassword());
+	}
+
+	private ClusterStatusCache createClusterStatusCache() {
+		if(configuration.getClusterSharedDirectoryPath() == null) {
+			return null;
+		}
+		String nodeId = configuration.getClusterNodeId();
+		if(isBlank(nodeId)) {
+			// pid@hostname
+			nodeId = ManagementFactory.getRuntimeMXBean().getName();
+		}
+		try {
+			return new ClusterStatusCache(
+					new FileSharedStatusStore(configuration.getClusterSharedDirectoryPath()),
+					nodeId,
+					configuration.getClusterHeartbeatInterval(),
+					configuration.getClusterStatusMaxAge());
+		} catch (IOException e) {
+			LOGGER.error("Couldn't initialize shared status store, statuses won't be shared between nodes.", e);
+			return null;
+		}
+	}
+
+	private void closeComponents() {
+		if(templateFiles != null) {
+			templateFiles.close();
+			templateFiles = null;
+		}
+		if(ticketOutbox != null) {
+			// before the services, so the ticket being sent can finish
+			ticketOutbox.close();
+			ticketOutbox = null;
+		}
+		if(pushListener != null) {
+			pushListener.close();
+			pushListener = null;
+		}
+		if(ticketJournal != null) {
+			ticketJournal.close();
+			ticketJournal = null;
+		}
+		if(clusterStatuses != null) {
+			clusterStatuses.close();
+			clusterStatuses = null;
+		}
+		if(statusCache != null) {
+			LOGGER.debug("Itsm status cache had {} hits and {} misses", 
+					statusCache.getHitCount(), statusCache.getMissCount());
+		}
+	}
+
+	/**
+	 * Closes web service clients that are no longer published, any of them may be null.
+	 */
+	private void closeWebServices(Bus bus, ServicePool<IntegrationEndpoint> services, AsyncDispatcher dispatcher) {
+		if(dispatcher != null) {
+			dispatcher.close();
+		}
+		if(services != null) {
+			// borrowed clients are destroyed when returned
+			services.close();
+		}
+		ConfigurableServiceFactory.shutdownQuietly(bus);
 	}
 
 	@Override
@@ -224,10 +862,8 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 				request.setAttributes(attrs);
 			}
 			
-			IntegrationOperationOutput response = null;
-			synchronized (itsmService) {
-				response = itsmService.integrationOperation(request);
-			}
+			// bypasses circuit breaker and retries, test should tell the current state
+			IntegrationOperationOutput response = pooledCall(request);
 
 			if(testConnectionOnly && response.getStatus() != null) {
 				recordSuccess(response, connectionResult);
@@ -254,16 +890,70 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 	private String sendTicket(TemplateContext templateContext, OperationResult result) 
 			throws CommunicationException {
 
-		// ticket with default values
+		Ticket ticket = renderTicket(templateContext);
+
+		TicketFingerprints fingerprints = ticketFingerprints;
+		if(fingerprints == null) {
+			return deliverTicket(ticket, templateContext.getOperation(), result);
+		}
+		String fingerprint = TicketFingerprints.fingerprint(
+				ticket.getAttributes(), templateContext.getOperation(), templateContext.getIdentifier());
+		String createdTicket = fingerprints.createdTicket(fingerprint);
+		if(createdTicket != null) {
+			LOGGER.debug("Same ticket was created recently as {}, not creating it again", createdTicket);
+			fillResultOnKnownStatus(result, "duplicate", TicketStatus.NEW);
+			return createdTicket;
+		}
+		String ticketId = deliverTicket(ticket, templateContext.getOperation(), result);
+		if(ticketId != null) {
+			fingerprints.ticketCreated(fingerprint, ticketId);
+		}
+		return ticketId;
+	}
+
+	/**
+	 * @return ticket with default values and the rendered descriptions
+	 */
+	private Ticket renderTicket(TemplateContext templateContext) {
 		Ticket ticket = new Ticket();
-		MessageType messageType = MessageType.CREATE;
 		
+		// rendering stops at the attribute length limit
 		ticket.add(ItsmAttributes.DESCRIPTION, 
-				templater.fillFrom(TemplateRepository.TEMPLATE_DESCRIPTION_ID, templateContext));
+				templater.fillFrom(TemplateRepository.TEMPLATE_DESCRIPTION_ID, templateContext, 
+						ItsmAttributes.DESCRIPTION.getMaxLength()));
 		ticket.add(ItsmAttributes.DETAILED_DESCRIPTION, 
-				templater.fillFrom(TemplateRepository.TEMPLATE_DETAIL_ID, templateContext));
+				templater.fillFrom(TemplateRepository.TEMPLATE_DETAIL_ID, templateContext, 
+						configuration.getMaxDetailedDescriptionLength()));
 		ticket.add(ItsmAttributes.CI_NAME, configuration.getCIName());
 		ticket.add(ItsmAttributes.PRIORITY, configuration.getPriority());
+		return ticket;
+	}
+
+	/**
+	 * Queues the ticket in the outbox or creates it right away.
+	 *
+	 * @return local reference or incident number
+	 */
+	private String deliverTicket(Ticket ticket, String operation, OperationResult result) 
+			throws CommunicationException {
+
+		TicketOutbox outbox = ticketOutbox;
+		if(outbox != null) {
+			try {
+				String localReference = outbox.enqueue(ticket.getAttributes(), operation);
+				fillResultOnKnownStatus(result, "outbox", TicketStatus.NEW);
+				return localReference;
+			} catch (IOException e) {
+				LOGGER.error("Couldn't store ticket in the outbox, sending it directly.", e);
+			}
+		}
+		return createIncident(ticket, operation, result);
+	}
+
+	private String createIncident(Ticket ticket, String operation, OperationResult result) 
+			throws CommunicationException {
+
+		MessageType messageType = MessageType.CREATE;
 
 		// create request from ticket
 		IntegrationOperationInput addRequest = new IntegrationOperationInput();
@@ -279,25 +969,197 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 			// return IN_PROGRESS as
 			// 1) the status is not returned 2) UNKNOWN signals an error 3) asking seems not worth it(?)
 			fillResultOnSuccess(result, response, TicketStatus.IN_PROGRESS);
-			return getAttributeValue(ItsmAttributes.INCIDENT_NUMBER, response.getAttributes().getAttribute());
+			String incidentNumber = getAttributeValue(ItsmAttributes.INCIDENT_NUMBER, response.getAttributes().getAttribute());
+			if(ticketJournal != null && incidentNumber != null) {
+				ticketJournal.ticketCreated(incidentNumber, operation);
+			}
+			return incidentNumber;
 		}
 	}
 
+	/**
+	 * Sends ticket queued in the outbox, called from the outbox thread.
+	 */
+	private String sendQueuedTicket(Map<String, String> attributes, String operation) throws CommunicationException {
+		Ticket ticket = new Ticket();
+		ticket.getAttributes().putAll(attributes);
+		OperationResult result = new OperationResult(ItsmManualConnector.class.getName() + ".sendQueuedTicket");
+		try {
+			return createIncident(ticket, operation, result);
+		} catch (CommunicationException e) {
+			result.computeStatus();
+			if(result.isFatalError()) {
+				// Itsm responded with ERROR, the same ticket would be rejected again
+				LOGGER.error("Itsm rejected queued ticket: {}", e.getMessage());
+				return null;
+			}
+			throw e;
+		} catch (SOAPFaultException e) {
+			// answered by the service, sending the same ticket again would fail the same way
+			LOGGER.error("Itsm rejected queued ticket with fault: {}", e.getMessage());
+			return null;
+		}
+	}
+
+	private IntegrationOperationOutput getEntryCall(IntegrationOperationInput request) throws CommunicationException {
+		if(requestHedging == null) {
+			return ioCall(request);
+		}
+		// both requests go through the async path, so the slower one can be cancelled
+		return retriedCall(request, () -> requestHedging.call(request, this::ioCallAsync));
+	}
+
 	private IntegrationOperationOutput ioCall(IntegrationOperationInput request) throws CommunicationException {
+		return retriedCall(request, () -> limitedCall(request));
+	}
+
+	private IntegrationOperationOutput retriedCall(IntegrationOperationInput request, Attempt call) 
+			throws CommunicationException {
+		// GetEntry only reads, repeating it is safe. Repeating Create could create duplicate tickets.
+		boolean idempotent = MessageType.GET_ENTRY.value().equals(request.getMessageType());
+		
+		for(int attempt = 1; ; attempt++) {
+			try {
+				return call.call();
+				
+			} catch (SOAPFaultException | CapacityExceededException ex) {
+				// answered by the service, or not sent at all because the local limits were reached
+				throw ex;
+			} catch (CommunicationException | WebServiceException ex) {
+				if( ! idempotent || ! retryPolicy.canRetry(attempt) 
+						|| circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+					throw ex;
+				}
+				long backoff = retryPolicy.backoffMillis(attempt);
+				LOGGER.debug("Itsm {} call attempt {} failed, retrying in {} ms: {}", 
+						request.getMessageType(), attempt, backoff, ex.getMessage());
+				sleep(backoff);
+			}
+		}
+	}
+
+	private IntegrationOperationOutput limitedCall(IntegrationOperationInput request) throws CommunicationException {
+		// waiting for the limits is local, it is not a service failure for the circuit breaker
+		if(rateLimiter != null) {
+			rateLimiter.acquire(configuration.getPoolBorrowTimeout());
+		}
+		if(concurrencyLimiter == null) {
+			return breakerCall(request);
+		}
+		
+		concurrencyLimiter.acquire(configuration.getPoolBorrowTimeout());
+		long start = System.nanoTime();
+		boolean dropped = true;
+		boolean called = true;
 		try {
-			// Access to cxf service is synchronized as a poor man's 
-			// thread safety - single connection pooling
-			synchronized (itsmService) {
-				return itsmService.integrationOperation(request);
+			IntegrationOperationOutput response = breakerCall(request);
+			dropped = response.getStatus() == StatusEnumType.ERROR;
+			return response;
+		} catch (CapacityExceededException e) {
+			// no pooled client was free, Itsm was not called and tells nothing about its latency
+			called = false;
+			throw e;
+		} finally {
+			if(called) {
+				concurrencyLimiter.release(System.nanoTime() - start, dropped);
+			} else {
+				concurrencyLimiter.cancel();
 			}
+		}
+	}
+
+	private IntegrationOperationOutput breakerCall(IntegrationOperationInput request) throws CommunicationException {
+		circuitBreaker.acquirePermission();
+		try {
+			IntegrationOperationOutput response = pooledCall(request);
+			circuitBreaker.onSuccess();
+			return response;
+			
+		} catch (SOAPFaultException ex) {
+			// the service is up and answering
+			circuitBreaker.onSuccess();
+			throw ex;
+		} catch (CapacityExceededException ex) {
+			// no client was free, the service was not called
+			circuitBreaker.onIgnored();
+			throw ex;
+		} catch (CommunicationException | WebServiceException ex) {
+			circuitBreaker.onFailure();
+			throw ex;
+		} catch (RuntimeException ex) {
+			circuitBreaker.onIgnored();
+			throw ex;
+		}
+	}
+
+	private void sleep(long millis) throws CommunicationException {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CommunicationException("Interrupted while waiting to retry Itsm call", e);
+		}
+	}
+
+	private IntegrationOperationOutput pooledCall(IntegrationOperationInput request) throws CommunicationException {
+		ServicePool<IntegrationEndpoint> services = itsmServices;
+		if(services == null) {
+			throw new CommunicationException("Itsm connector is not connected");
+		}
+		IntegrationEndpoint itsmService = services.borrow();
+		boolean reusable = true;
+		try {
+			return itsmService.integrationOperation(request);
 			
 		} catch (WebServiceException ex) {
+			// soap fault is a regular answer, other errors may leave the client in unknown state
+			reusable = ex instanceof SOAPFaultException;
 			if (ex instanceof SOAPFaultException) {
 				ConfigurableServiceFactory.handleCreateOpSoapFault((SOAPFaultException) ex);
 			}
 			ConfigurableServiceFactory.handleWebServiceException(ex);
 			throw ex;
+		} finally {
+			if(reusable) {
+				services.release(itsmService);
+			} else {
+				services.invalidate(itsmService);
+			}
+		}
+	}
+
+	private CompletableFuture<IntegrationOperationOutput> ioCallAsync(IntegrationOperationInput request) {
+		AsyncDispatcher dispatcher = asyncDispatcher;
+		try {
+			if(dispatcher == null) {
+				throw new CommunicationException("Itsm connector is not connected");
+			}
+			circuitBreaker.acquirePermission();
+		} catch (CommunicationException e) {
+			CompletableFuture<IntegrationOperationOutput> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
 		}
+		
+		// the dispatcher future itself is returned, so cancelling it cancels the request
+		CompletableFuture<IntegrationOperationOutput> future = dispatcher.submit(request);
+		future.whenComplete((response, failure) -> {
+			if(failure == null || failure instanceof SOAPFaultException) {
+				circuitBreaker.onSuccess();
+			} else if(failure instanceof CapacityExceededException) {
+				circuitBreaker.onIgnored();
+			} else if(failure instanceof CommunicationException || failure instanceof WebServiceException) {
+				circuitBreaker.onFailure();
+			} else {
+				circuitBreaker.onIgnored();
+			}
+		});
+		return future;
+	}
+
+	private int maxFormattedValues() {
+		Integer maxValues = configuration.getMaxFormattedValues();
+		return maxValues != null ? maxValues : PrismFormat.ALL_VALUES;
 	}
 
 	private TemplateContext templateContextOperation(String operationName) {
@@ -313,6 +1175,12 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 		result.addSubresult(subresult);
 	}
 	
+	private void fillResultOnKnownStatus(OperationResult result, String source, TicketStatus ticketStatus) {
+		OperationResult subresult = new OperationResult("Itsm integration operation result - " + source);
+		subresult.setStatus(mapTicketStatus(ticketStatus));
+		result.addSubresult(subresult);
+	}
+	
 	private void fillResultOnError(OperationResult result, IntegrationOperationOutput response) {
 
 		OperationResult subresult = new OperationResult("Itsm integration operation result - error");
@@ -396,4 +1264,36 @@ public class ItsmManualConnector extends AbstractManualConnectorInstance {
 	private static String msg(String key) {
 		return messages.getString(key);
 	}
+
+	@FunctionalInterface
+	private interface Attempt {
+		IntegrationOperationOutput call() throws CommunicationException;
+	}
+
+	private static final class BulkBatch {
+		private final OperationResult result;
+		private final long start = System.currentTimeMillis();
+		private int submitted = 0;
+		private int remaining = 0;
+		private boolean closed = false;
+
+		private BulkBatch(OperationResult result) {
+			this.result = result;
+		}
+	}
+
+	private static final class BulkQuery {
+		private final String ticketId;
+		private final BulkBatch batch;
+		private final OperationResult result;
+		// written by the completing thread, read after passing through the completion queue
+		private OperationResultStatus status;
+		private Throwable failure;
+
+		private BulkQuery(String ticketId, BulkBatch batch) {
+			this.ticketId = ticketId;
+			this.batch = batch;
+			this.result = new OperationResult(OPERATION_QUERY_STATUS_BATCH + ".ticket");
+		}
+	}
 }
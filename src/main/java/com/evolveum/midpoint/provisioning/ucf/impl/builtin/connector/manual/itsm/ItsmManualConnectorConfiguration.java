@@ -46,12 +46,29 @@ public class ItsmManualConnectorConfiguration implements CallbackHandler, Templa
 	
 	public static final String NON_VALIDATING_TRUST_MANAGER = "NonValidatingTM";
 
+	public static final String HTTP_TRANSPORT_URL_CONNECTION = "URLConnection";
+	public static final String HTTP_TRANSPORT_ASYNC_CLIENT = "AsyncHttpClient";
+
 	private String wsUrl;
 	private String username;
 	private String password;
 	private Long timeout = 60000L;
 	private String soapLogBasedirString;
 	private Path soapLogBasedirPath;
+	private String journalBasedirString;
+	private Path journalBasedirPath;
+
+	private String templateDirectoryString;
+	private Path templateDirectoryPath;
+
+	private String outboxDirectoryString;
+	private Path outboxDirectoryPath;
+	private Long outboxSendInterval = 1000L;
+	private String clusterSharedDirectoryString;
+	private Path clusterSharedDirectoryPath;
+	private String clusterNodeId;
+	private Long clusterHeartbeatInterval = 30000L;
+	private Long clusterStatusMaxAge = 600000L;
 	private String testIncidentNumber;
 	private String profileName;
 	private String cIName;
@@ -68,6 +85,67 @@ public class ItsmManualConnectorConfiguration implements CallbackHandler, Templa
 
 	private String priority;
 
+	private Integer poolMaxSize = 8;
+	private Long poolMaxIdleTime = 300000L;
+	private Long poolBorrowTimeout = 60000L;
+
+	private Integer asyncMaxInFlight = 16;
+	private Integer asyncMaxPending = 10000;
+
+	private String httpTransport;
+	private Integer httpMaxConnections = 64;
+	private Integer httpMaxConnectionsPerHost = 16;
+	private Long httpConnectionMaxIdle = 60000L;
+	private Long httpConnectionTtl = 600000L;
+
+	private Integer retryMaxAttempts = 3;
+	private Long retryInitialBackoff = 200L;
+	private Long retryMaxBackoff = 5000L;
+
+	private Integer circuitBreakerWindowSize = 50;
+	private Integer circuitBreakerMinimumCalls = 20;
+	private Integer circuitBreakerFailureRate = 50;
+	private Long circuitBreakerOpenTime = 30000L;
+
+	private Boolean adaptiveConcurrency = false;
+	private Integer adaptiveConcurrencyInitialLimit = 2;
+	private Integer rateLimit;
+
+	private Boolean hedging = false;
+	private Integer hedgingPercentile = 95;
+	private Long hedgingMinDelay = 100L;
+
+	private Integer statusCacheSize = 10000;
+	private Long statusCacheTtl = 30000L;
+
+	private Boolean adaptivePolling = false;
+	private Long pollingMinInterval = 60000L;
+	private Long pollingMaxInterval = 3600000L;
+
+	private Integer pushListenerPort;
+	private String pushListenerAddress;
+	private String pushUsername;
+	private String pushPassword;
+	private String pushKeyStoreString;
+	private Path pushKeyStorePath;
+	private String pushKeyStorePassword;
+	private Long pushStatusMaxAge = 3600000L;
+
+	private Integer bulkBatchSize = 500;
+
+	private Long negativeCacheInitialInterval = 0L;
+	private Long negativeCacheMaxInterval = 86400000L;
+
+	private Long modifyCoalescingWindow = 0L;
+
+	private Long deduplicationWindow = 0L;
+
+	private Integer maxFormattedValues;
+
+	private Integer maxDetailedDescriptionLength = 32000;
+
+	private Integer parallelFormattingThreshold;
+
 	@ConfigurationProperty
 	public String getWsUrl() {
 		return wsUrl;
@@ -95,6 +173,8 @@ public class ItsmManualConnectorConfiguration implements CallbackHandler, Templa
 		this.password = password;
 	}
 
+	@ConfigurationProperty
+	// in ms, used as both connect and receive timeout
 	public Long getTimeout() {
 		return timeout;
 	}
@@ -137,6 +217,150 @@ public class ItsmManualConnectorConfiguration implements CallbackHandler, Templa
 		return soapLogBasedirPath;
 	}
 
+	@ConfigurationProperty
+	// directory of the local ticket journal, empty disables the journal
+	public String getJournalBasedir() {
+		return journalBasedirString;
+	}
+
+	public void setJournalBasedir(final String journalBasedir) {
+		journalBasedirString = journalBasedir;
+
+		if (journalBasedirString == null) {
+			this.journalBasedirPath = null;
+		} else {
+			try {
+				this.journalBasedirPath = Paths.get(journalBasedirString);
+				journalBasedirString = this.journalBasedirPath.toString(); //normalized
+			} catch (InvalidPathException ex) {
+				LOGGER.error("The journal basedir is not a valid path.", ex);
+				this.journalBasedirPath = null;
+			}
+		}
+	}
+
+	public Path getJournalBasedirPath() {
+		return journalBasedirPath;
+	}
+
+	@ConfigurationProperty
+	// directory with templates in <template id>.vm files, reloaded on change, overrides the configured templates
+	public String getTemplateDirectory() {
+		return templateDirectoryString;
+	}
+
+	public void setTemplateDirectory(final String templateDirectory) {
+		templateDirectoryString = templateDirectory;
+
+		if (templateDirectoryString == null) {
+			this.templateDirectoryPath = null;
+		} else {
+			try {
+				this.templateDirectoryPath = Paths.get(templateDirectoryString);
+				templateDirectoryString = this.templateDirectoryPath.toString(); //normalized
+			} catch (InvalidPathException ex) {
+				LOGGER.error("The template directory is not a valid path.", ex);
+				this.templateDirectoryPath = null;
+			}
+		}
+	}
+
+	public Path getTemplateDirectoryPath() {
+		return templateDirectoryPath;
+	}
+
+	@ConfigurationProperty
+	// directory of the ticket outbox, tickets are queued there and sent in background, empty sends tickets directly
+	public String getOutboxDirectory() {
+		return outboxDirectoryString;
+	}
+
+	public void setOutboxDirectory(final String outboxDirectory) {
+		outboxDirectoryString = outboxDirectory;
+
+		if (outboxDirectoryString == null) {
+			this.outboxDirectoryPath = null;
+		} else {
+			try {
+				this.outboxDirectoryPath = Paths.get(outboxDirectoryString);
+				outboxDirectoryString = this.outboxDirectoryPath.toString(); //normalized
+			} catch (InvalidPathException ex) {
+				LOGGER.error("The outbox directory is not a valid path.", ex);
+				this.outboxDirectoryPath = null;
+			}
+		}
+	}
+
+	public Path getOutboxDirectoryPath() {
+		return outboxDirectoryPath;
+	}
+
+	@ConfigurationProperty
+	// in ms, delay between sending of two queued tickets
+	public Long getOutboxSendInterval() {
+		return outboxSendInterval;
+	}
+
+	public void setOutboxSendInterval(Long outboxSendInterval) {
+		this.outboxSendInterval = outboxSendInterval;
+	}
+
+	@ConfigurationProperty
+	// directory shared by all midPoint nodes, enables sharing of polled statuses between nodes
+	public String getClusterSharedDirectory() {
+		return clusterSharedDirectoryString;
+	}
+
+	public void setClusterSharedDirectory(final String clusterSharedDirectory) {
+		clusterSharedDirectoryString = clusterSharedDirectory;
+
+		if (clusterSharedDirectoryString == null) {
+			this.clusterSharedDirectoryPath = null;
+		} else {
+			try {
+				this.clusterSharedDirectoryPath = Paths.get(clusterSharedDirectoryString);
+				clusterSharedDirectoryString = this.clusterSharedDirectoryPath.toString(); //normalized
+			} catch (InvalidPathException ex) {
+				LOGGER.error("The cluster shared directory is not a valid path.", ex);
+				this.clusterSharedDirectoryPath = null;
+			}
+		}
+	}
+
+	public Path getClusterSharedDirectoryPath() {
+		return clusterSharedDirectoryPath;
+	}
+
+	@ConfigurationProperty
+	// unique name of this node, defaults to pid@hostname
+	public String getClusterNodeId() {
+		return clusterNodeId;
+	}
+
+	public void setClusterNodeId(String clusterNodeId) {
+		this.clusterNodeId = clusterNodeId;
+	}
+
+	@ConfigurationProperty
+	// in ms, heartbeat period, node missing three heartbeats is considered gone and other nodes poll its preferred tickets
+	public Long getClusterHeartbeatInterval() {
+		return clusterHeartbeatInterval;
+	}
+
+	public void setClusterHeartbeatInterval(Long clusterHeartbeatInterval) {
+		this.clusterHeartbeatInterval = clusterHeartbeatInterval;
+	}
+
+	@ConfigurationProperty
+	// in ms, older status published by another node is not used and the ticket is polled locally
+	public Long getClusterStatusMaxAge() {
+		return clusterStatusMaxAge;
+	}
+
+	public void setClusterStatusMaxAge(Long clusterStatusMaxAge) {
+		this.clusterStatusMaxAge = clusterStatusMaxAge;
+	}
+
 	@ConfigurationProperty
 	public String getTestIncidentNumber() {
 		return testIncidentNumber;
@@ -220,14 +444,556 @@ public class ItsmManualConnectorConfiguration implements CallbackHandler, Templa
 		this.priority = priority;
 	}
 
+	@ConfigurationProperty
+	// maximal number of concurrently used web service clients
+	public Integer getPoolMaxSize() {
+		return poolMaxSize;
+	}
+
+	public void setPoolMaxSize(Integer poolMaxSize) {
+		this.poolMaxSize = poolMaxSize;
+	}
+
+	@ConfigurationProperty
+	// in ms, unused web service clients are closed after this time
+	public Long getPoolMaxIdleTime() {
+		return poolMaxIdleTime;
+	}
+
+	public void setPoolMaxIdleTime(Long poolMaxIdleTime) {
+		this.poolMaxIdleTime = poolMaxIdleTime;
+	}
+
+	@ConfigurationProperty
+	// in ms, how long to wait for a web service client when all are in use
+	public Long getPoolBorrowTimeout() {
+		return poolBorrowTimeout;
+	}
+
+	public void setPoolBorrowTimeout(Long poolBorrowTimeout) {
+		this.poolBorrowTimeout = poolBorrowTimeout;
+	}
+
+	@ConfigurationProperty
+	// maximal number of asynchronous requests sent to the service at the same time
+	public Integer getAsyncMaxInFlight() {
+		return asyncMaxInFlight;
+	}
+
+	public void setAsyncMaxInFlight(Integer asyncMaxInFlight) {
+		this.asyncMaxInFlight = asyncMaxInFlight;
+	}
+
+	@ConfigurationProperty
+	// maximal number of asynchronous requests waiting to be sent
+	public Integer getAsyncMaxPending() {
+		return asyncMaxPending;
+	}
+
+	public void setAsyncMaxPending(Integer asyncMaxPending) {
+		this.asyncMaxPending = asyncMaxPending;
+	}
+
+	@ConfigurationProperty
+	// URLConnection (default) or AsyncHttpClient for pooled keep-alive connections
+	public String getHttpTransport() {
+		return httpTransport;
+	}
+
+	public void setHttpTransport(String httpTransport) {
+		this.httpTransport = httpTransport;
+	}
+
+	public boolean isAsyncHttpClientTransport() {
+		return HTTP_TRANSPORT_ASYNC_CLIENT.equals(httpTransport);
+	}
+
+	@ConfigurationProperty
+	// AsyncHttpClient transport only
+	public Integer getHttpMaxConnections() {
+		return httpMaxConnections;
+	}
+
+	public void setHttpMaxConnections(Integer httpMaxConnections) {
+		this.httpMaxConnections = httpMaxConnections;
+	}
+
+	@ConfigurationProperty
+	// AsyncHttpClient transport only
+	public Integer getHttpMaxConnectionsPerHost() {
+		return httpMaxConnectionsPerHost;
+	}
+
+	public void setHttpMaxConnectionsPerHost(Integer httpMaxConnectionsPerHost) {
+		this.httpMaxConnectionsPerHost = httpMaxConnectionsPerHost;
+	}
+
+	@ConfigurationProperty
+	// in ms, AsyncHttpClient transport only, idle connections are closed after this time
+	public Long getHttpConnectionMaxIdle() {
+		return httpConnectionMaxIdle;
+	}
+
+	public void setHttpConnectionMaxIdle(Long httpConnectionMaxIdle) {
+		this.httpConnectionMaxIdle = httpConnectionMaxIdle;
+	}
+
+	@ConfigurationProperty
+	// in ms, AsyncHttpClient transport only, connections are not reused after this time
+	public Long getHttpConnectionTtl() {
+		return httpConnectionTtl;
+	}
+
+	public void setHttpConnectionTtl(Long httpConnectionTtl) {
+		this.httpConnectionTtl = httpConnectionTtl;
+	}
+
+	@ConfigurationProperty
+	// attempts of idempotent GetEntry calls failing on communication error, 1 means no retry
+	public Integer getRetryMaxAttempts() {
+		return retryMaxAttempts;
+	}
+
+	public void setRetryMaxAttempts(Integer retryMaxAttempts) {
+		this.retryMaxAttempts = retryMaxAttempts;
+	}
+
+	@ConfigurationProperty
+	// in ms, upper bound of the first retry delay, doubled with each attempt
+	public Long getRetryInitialBackoff() {
+		return retryInitialBackoff;
+	}
+
+	public void setRetryInitialBackoff(Long retryInitialBackoff) {
+		this.retryInitialBackoff = retryInitialBackoff;
+	}
+
+	@ConfigurationProperty
+	// in ms
+	public Long getRetryMaxBackoff() {
+		return retryMaxBackoff;
+	}
+
+	public void setRetryMaxBackoff(Long retryMaxBackoff) {
+		this.retryMaxBackoff = retryMaxBackoff;
+	}
+
+	@ConfigurationProperty
+	// number of recent calls the failure rate is computed from
+	public Integer getCircuitBreakerWindowSize() {
+		return circuitBreakerWindowSize;
+	}
+
+	public void setCircuitBreakerWindowSize(Integer circuitBreakerWindowSize) {
+		this.circuitBreakerWindowSize = circuitBreakerWindowSize;
+	}
+
+	@ConfigurationProperty
+	// the breaker does not open before this number of calls is recorded
+	public Integer getCircuitBreakerMinimumCalls() {
+		return circuitBreakerMinimumCalls;
+	}
+
+	public void setCircuitBreakerMinimumCalls(Integer circuitBreakerMinimumCalls) {
+		this.circuitBreakerMinimumCalls = circuitBreakerMinimumCalls;
+	}
+
+	@ConfigurationProperty
+	// in percent, failure rate opening the breaker
+	public Integer getCircuitBreakerFailureRate() {
+		return circuitBreakerFailureRate;
+	}
+
+	public void setCircuitBreakerFailureRate(Integer circuitBreakerFailureRate) {
+		this.circuitBreakerFailureRate = circuitBreakerFailureRate;
+	}
+
+	@ConfigurationProperty
+	// in ms, how long calls fail fast before a probe call is sent
+	public Long getCircuitBreakerOpenTime() {
+		return circuitBreakerOpenTime;
+	}
+
+	public void setCircuitBreakerOpenTime(Long circuitBreakerOpenTime) {
+		this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+	}
+
+	@ConfigurationProperty
+	// adjust the number of concurrent calls, synchronous and asynchronous together, to the latency and errors of the service
+	public Boolean getAdaptiveConcurrency() {
+		return adaptiveConcurrency;
+	}
+
+	public void setAdaptiveConcurrency(Boolean adaptiveConcurrency) {
+		this.adaptiveConcurrency = adaptiveConcurrency;
+	}
+
+	@ConfigurationProperty
+	// concurrent calls allowed before the first adjustment, at most poolMaxSize
+	public Integer getAdaptiveConcurrencyInitialLimit() {
+		return adaptiveConcurrencyInitialLimit;
+	}
+
+	public void setAdaptiveConcurrencyInitialLimit(Integer adaptiveConcurrencyInitialLimit) {
+		this.adaptiveConcurrencyInitialLimit = adaptiveConcurrencyInitialLimit;
+	}
+
+	@ConfigurationProperty
+	// requests per second including asynchronous ones, shared by all resources using the same profile, empty means no limit
+	public Integer getRateLimit() {
+		return rateLimit;
+	}
+
+	public void setRateLimit(Integer rateLimit) {
+		this.rateLimit = rateLimit;
+	}
+
+	@ConfigurationProperty
+	// send a second GetEntry request when the first one is slow, failed pairs are retried like other GetEntry calls
+	public Boolean getHedging() {
+		return hedging;
+	}
+
+	public void setHedging(Boolean hedging) {
+		this.hedging = hedging;
+	}
+
+	@ConfigurationProperty
+	// percentile of recent GetEntry latencies after which the second request is sent
+	public Integer getHedgingPercentile() {
+		return hedgingPercentile;
+	}
+
+	public void setHedgingPercentile(Integer hedgingPercentile) {
+		this.hedgingPercentile = hedgingPercentile;
+	}
+
+	@ConfigurationProperty
+	// in ms, the second request is never sent sooner
+	public Long getHedgingMinDelay() {
+		return hedgingMinDelay;
+	}
+
+	public void setHedgingMinDelay(Long hedgingMinDelay) {
+		this.hedgingMinDelay = hedgingMinDelay;
+	}
+
+	@ConfigurationProperty
+	// maximal number of cached ticket statuses, 0 disables the cache
+	public Integer getStatusCacheSize() {
+		return statusCacheSize;
+	}
+
+	public void setStatusCacheSize(Integer statusCacheSize) {
+		this.statusCacheSize = statusCacheSize;
+	}
+
+	@ConfigurationProperty
+	// in ms, how long a status that can still change is cached, final statuses are cached until evicted
+	public Long getStatusCacheTtl() {
+		return statusCacheTtl;
+	}
+
+	public void setStatusCacheTtl(Long statusCacheTtl) {
+		this.statusCacheTtl = statusCacheTtl;
+	}
+
+	@ConfigurationProperty
+	// poll tickets less often the longer their status stays unchanged
+	public Boolean getAdaptivePolling() {
+		return adaptivePolling;
+	}
+
+	public void setAdaptivePolling(Boolean adaptivePolling) {
+		this.adaptivePolling = adaptivePolling;
+	}
+
+	@ConfigurationProperty
+	// in ms, poll interval of a ticket whose status has just changed
+	public Long getPollingMinInterval() {
+		return pollingMinInterval;
+	}
+
+	public void setPollingMinInterval(Long pollingMinInterval) {
+		this.pollingMinInterval = pollingMinInterval;
+	}
+
+	@ConfigurationProperty
+	// in ms
+	public Long getPollingMaxInterval() {
+		return pollingMaxInterval;
+	}
+
+	public void setPollingMaxInterval(Long pollingMaxInterval) {
+		this.pollingMaxInterval = pollingMaxInterval;
+	}
+
+	@ConfigurationProperty
+	// port of the listener accepting status notifications from Itsm, empty disables the listener
+	public Integer getPushListenerPort() {
+		return pushListenerPort;
+	}
+
+	public void setPushListenerPort(Integer pushListenerPort) {
+		this.pushListenerPort = pushListenerPort;
+	}
+
+	@ConfigurationProperty
+	// address the push listener binds to, empty binds all interfaces
+	public String getPushListenerAddress() {
+		return pushListenerAddress;
+	}
+
+	public void setPushListenerAddress(String pushListenerAddress) {
+		this.pushListenerAddress = pushListenerAddress;
+	}
+
+	@ConfigurationProperty
+	// basic authentication of status notifications, must differ from the web service account
+	public String getPushUsername() {
+		return pushUsername;
+	}
+
+	public void setPushUsername(String pushUsername) {
+		this.pushUsername = pushUsername;
+	}
+
+	@ConfigurationProperty
+	public String getPushPassword() {
+		return pushPassword;
+	}
+
+	public void setPushPassword(String pushPassword) {
+		this.pushPassword = pushPassword;
+	}
+
+	@ConfigurationProperty
+	// PKCS12 or JKS (.jks) keystore with the listener key and certificate, enables https, empty means plain http
+	public String getPushKeyStore() {
+		return pushKeyStoreString;
+	}
+
+	public void setPushKeyStore(final String pushKeyStore) {
+		pushKeyStoreString = pushKeyStore;
+
+		if (pushKeyStoreString == null) {
+			this.pushKeyStorePath = null;
+		} else {
+			try {
+				this.pushKeyStorePath = Paths.get(pushKeyStoreString);
+				pushKeyStoreString = this.pushKeyStorePath.toString(); //normalized
+			} catch (InvalidPathException ex) {
+				LOGGER.error("The push keystore is not a valid path.", ex);
+				this.pushKeyStorePath = null;
+			}
+		}
+	}
+
+	public Path getPushKeyStorePath() {
+		return pushKeyStorePath;
+	}
+
+	@ConfigurationProperty
+	// password of the keystore and the key
+	public String getPushKeyStorePassword() {
+		return pushKeyStorePassword;
+	}
+
+	public void setPushKeyStorePassword(String pushKeyStorePassword) {
+		this.pushKeyStorePassword = pushKeyStorePassword;
+	}
+
+	@ConfigurationProperty
+	// in ms, tickets without a newer push are polled again, final statuses are trusted forever
+	public Long getPushStatusMaxAge() {
+		return pushStatusMaxAge;
+	}
+
+	public void setPushStatusMaxAge(Long pushStatusMaxAge) {
+		this.pushStatusMaxAge = pushStatusMaxAge;
+	}
+
+	@ConfigurationProperty
+	// number of tickets per result of bulk status query
+	public Integer getBulkBatchSize() {
+		return bulkBatchSize;
+	}
+
+	public void setBulkBatchSize(Integer bulkBatchSize) {
+		this.bulkBatchSize = bulkBatchSize;
+	}
+
+	@ConfigurationProperty
+	// in ms, ticket whose status query failed is not queried again sooner, e.g. 60000, 0 (default) disables the negative cache
+	public Long getNegativeCacheInitialInterval() {
+		return negativeCacheInitialInterval;
+	}
+
+	public void setNegativeCacheInitialInterval(Long negativeCacheInitialInterval) {
+		this.negativeCacheInitialInterval = negativeCacheInitialInterval;
+	}
+
+	@ConfigurationProperty
+	// in ms, the interval doubles with each failed query up to this value
+	public Long getNegativeCacheMaxInterval() {
+		return negativeCacheMaxInterval;
+	}
+
+	public void setNegativeCacheMaxInterval(Long negativeCacheMaxInterval) {
+		this.negativeCacheMaxInterval = negativeCacheMaxInterval;
+	}
+
+	@ConfigurationProperty
+	// in ms, a queued modification waits at least this long in the outbox and takes later modifications
+	// of the same account into its ticket, 0 disables merging, needs outboxDirectory
+	public Long getModifyCoalescingWindow() {
+		return modifyCoalescingWindow;
+	}
+
+	public void setModifyCoalescingWindow(Long modifyCoalescingWindow) {
+		this.modifyCoalescingWindow = modifyCoalescingWindow;
+	}
+
+	@ConfigurationProperty
+	// in ms, the same ticket requested again within the window is not created again, 0 disables deduplication
+	public Long getDeduplicationWindow() {
+		return deduplicationWindow;
+	}
+
+	public void setDeduplicationWindow(Long deduplicationWindow) {
+		this.deduplicationWindow = deduplicationWindow;
+	}
+
+	@ConfigurationProperty
+	// values of an attribute or delta formatted into the ticket, the rest is only counted, empty formats all values
+	public Integer getMaxFormattedValues() {
+		return maxFormattedValues;
+	}
+
+	public void setMaxFormattedValues(Integer maxFormattedValues) {
+		this.maxFormattedValues = maxFormattedValues;
+	}
+
+	@ConfigurationProperty
+	// characters of the detailed description, formatting of the account changes stops when it is reached
+	public Integer getMaxDetailedDescriptionLength() {
+		return maxDetailedDescriptionLength;
+	}
+
+	public void setMaxDetailedDescriptionLength(Integer maxDetailedDescriptionLength) {
+		this.maxDetailedDescriptionLength = maxDetailedDescriptionLength;
+	}
+
+	@ConfigurationProperty
+	// modifications with at least this many changes are formatted in parallel, empty formats them sequentially
+	public Integer getParallelFormattingThreshold() {
+		return parallelFormattingThreshold;
+	}
+
+	public void setParallelFormattingThreshold(Integer parallelFormattingThreshold) {
+		this.parallelFormattingThreshold = parallelFormattingThreshold;
+	}
+
 	public void validate() throws ConfigurationException {
 		assertNotEmpty(wsUrl, "wsUrl");
 		assertNotEmpty(username, "username");
 		assertNotEmpty(password, "password");
 
+		assertPositive(poolMaxSize, "poolMaxSize");
+		assertPositive(poolMaxIdleTime, "poolMaxIdleTime");
+		assertPositive(poolBorrowTimeout, "poolBorrowTimeout");
+		assertPositive(asyncMaxInFlight, "asyncMaxInFlight");
+		assertPositive(asyncMaxPending, "asyncMaxPending");
+		assertPositive(timeout, "timeout");
+
+		validateHttpTransport();
+
+		assertPositive(retryMaxAttempts, "retryMaxAttempts");
+		assertPositive(retryInitialBackoff, "retryInitialBackoff");
+		assertPositive(retryMaxBackoff, "retryMaxBackoff");
+		assertPositive(circuitBreakerWindowSize, "circuitBreakerWindowSize");
+		assertPositive(circuitBreakerMinimumCalls, "circuitBreakerMinimumCalls");
+		assertPositive(circuitBreakerFailureRate, "circuitBreakerFailureRate");
+		assertPositive(circuitBreakerOpenTime, "circuitBreakerOpenTime");
+		if(circuitBreakerFailureRate > 100) {
+			throw new ConfigurationException("circuitBreakerFailureRate must be a percentage between 1 and 100.");
+		}
+		if(Boolean.TRUE.equals(adaptiveConcurrency)) {
+			assertPositive(adaptiveConcurrencyInitialLimit, "adaptiveConcurrencyInitialLimit");
+		}
+		if(rateLimit != null) {
+			assertPositive(rateLimit, "rateLimit");
+		}
+		assertPositive(bulkBatchSize, "bulkBatchSize");
+		assertNotNegative(statusCacheSize, "statusCacheSize");
+		assertNotNegative(negativeCacheInitialInterval, "negativeCacheInitialInterval");
+		assertNotNegative(modifyCoalescingWindow, "modifyCoalescingWindow");
+		assertNotNegative(deduplicationWindow, "deduplicationWindow");
+		if(maxFormattedValues != null) {
+			assertPositive(maxFormattedValues, "maxFormattedValues");
+		}
+		assertPositive(maxDetailedDescriptionLength, "maxDetailedDescriptionLength");
+		if(parallelFormattingThreshold != null) {
+			assertPositive(parallelFormattingThreshold, "parallelFormattingThreshold");
+		}
+		if(modifyCoalescingWindow > 0 && StringUtils.isEmpty(outboxDirectoryString)) {
+			throw new ConfigurationException("modifyCoalescingWindow needs outboxDirectory, modifications are merged in the outbox.");
+		}
+		if(negativeCacheInitialInterval > 0) {
+			assertPositive(negativeCacheMaxInterval, "negativeCacheMaxInterval");
+		}
+		assertPositive(statusCacheTtl, "statusCacheTtl");
+		if(Boolean.TRUE.equals(adaptivePolling)) {
+			assertPositive(pollingMinInterval, "pollingMinInterval");
+			assertPositive(pollingMaxInterval, "pollingMaxInterval");
+			if(pollingMaxInterval < pollingMinInterval) {
+				throw new ConfigurationException("pollingMaxInterval must not be lower than pollingMinInterval.");
+			}
+		}
+		if(pushListenerPort != null) {
+			assertNotNegative(pushListenerPort, "pushListenerPort");
+			assertPositive(pushStatusMaxAge, "pushStatusMaxAge");
+			assertNotEmpty(pushUsername, "pushUsername");
+			assertNotEmpty(pushPassword, "pushPassword");
+			if(pushUsername.equals(username)) {
+				throw new ConfigurationException("pushUsername must differ from username, "
+						+ "the push listener must not accept the web service credentials.");
+			}
+			validatePushKeyStore();
+		}
+		if(Boolean.TRUE.equals(hedging)) {
+			assertPositive(hedgingPercentile, "hedgingPercentile");
+			assertPositive(hedgingMinDelay, "hedgingMinDelay");
+			if(hedgingPercentile > 100) {
+				throw new ConfigurationException("hedgingPercentile must be a percentile between 1 and 100.");
+			}
+		}
+
 		validateSslTrustManager();
 		
-		validateLogDirectory();
+		validateDirectory(soapLogBasedirString, soapLogBasedirPath, "SOAP log basedir");
+		validateDirectory(journalBasedirString, journalBasedirPath, "journal basedir");
+		validateDirectory(outboxDirectoryString, outboxDirectoryPath, "outbox directory");
+		validateDirectory(templateDirectoryString, templateDirectoryPath, "template directory");
+		assertPositive(outboxSendInterval, "outboxSendInterval");
+		validateDirectory(clusterSharedDirectoryString, clusterSharedDirectoryPath, "cluster shared directory");
+		if(clusterSharedDirectoryString != null) {
+			assertPositive(clusterHeartbeatInterval, "clusterHeartbeatInterval");
+			assertPositive(clusterStatusMaxAge, "clusterStatusMaxAge");
+		}
+	}
+
+	private void validatePushKeyStore() throws ConfigurationException {
+		if (pushKeyStoreString == null) {
+			return;
+		}
+		if (pushKeyStorePath == null) {
+			throw new ConfigurationException("The push keystore is not a valid path.");
+		}
+		if (!exists(pushKeyStorePath) || isDirectory(pushKeyStorePath)) {
+			throw new ConfigurationException("The push keystore (" + pushKeyStoreString + ") is not an existing file.");
+		}
+		assertNotEmpty(pushKeyStorePassword, "pushKeyStorePassword");
 	}
 
 	private void validateSslTrustManager() throws ConfigurationException {
@@ -244,17 +1010,37 @@ public class ItsmManualConnectorConfiguration implements CallbackHandler, Templa
 		}
 	}
 
-	private void validateLogDirectory() throws ConfigurationException {
-		if (soapLogBasedirString != null) {
-			if (soapLogBasedirPath == null) {
-				throw new ConfigurationException("The SOAP log basedir is not a valid path.");
+	private void validateHttpTransport() throws ConfigurationException {
+		if(StringUtils.isEmpty(httpTransport)) {
+			return;
+		}
+		switch(httpTransport) {
+			case HTTP_TRANSPORT_URL_CONNECTION:
+				return;
+			case HTTP_TRANSPORT_ASYNC_CLIENT:
+				assertPositive(httpMaxConnections, "httpMaxConnections");
+				assertPositive(httpMaxConnectionsPerHost, "httpMaxConnectionsPerHost");
+				assertPositive(httpConnectionMaxIdle, "httpConnectionMaxIdle");
+				assertPositive(httpConnectionTtl, "httpConnectionTtl");
+				return;
+			default:
+				throw new ConfigurationException("httpTransport has invalid value '" + httpTransport
+						+ "'. Valid values are <empty>, " + HTTP_TRANSPORT_URL_CONNECTION
+						+ " and " + HTTP_TRANSPORT_ASYNC_CLIENT);
+		}
+	}
+
+	private void validateDirectory(String pathString, Path path, String name) throws ConfigurationException {
+		if (pathString != null) {
+			if (path == null) {
+				throw new ConfigurationException("The " + name + " is not a valid path.");
 			}
 
-			if (!isDirectory(soapLogBasedirPath)) {
-				if (exists(soapLogBasedirPath)) {
-					throw new ConfigurationException("The path to the SOAP log basedir (" + soapLogBasedirString + ") points to an existing file.");
+			if (!isDirectory(path)) {
+				if (exists(path)) {
+					throw new ConfigurationException("The path to the " + name + " (" + pathString + ") points to an existing file.");
 				}
-				throw new ConfigurationException("The SOAP log basedir (" + soapLogBasedirString + ") doesn't exist.");
+				throw new ConfigurationException("The " + name + " (" + pathString + ") doesn't exist.");
 			}
 		}
 	}
@@ -265,6 +1051,18 @@ public class ItsmManualConnectorConfiguration implements CallbackHandler, Templa
 		}
 	}
 
+	private void assertNotNegative(Number value, String name) throws ConfigurationException {
+		if(value == null || value.longValue() < 0) {
+			throw new ConfigurationException(name + " must not be a negative number.");
+		}
+	}
+
+	private void assertPositive(Number value, String name) throws ConfigurationException {
+		if(value == null || value.longValue() <= 0) {
+			throw new ConfigurationException(name + " must be a positive number.");
+		}
+	}
+
 	public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
 		// taken from cxf doc
 		WSPasswordCallback pc = (WSPasswordCallback) callbacks[0];
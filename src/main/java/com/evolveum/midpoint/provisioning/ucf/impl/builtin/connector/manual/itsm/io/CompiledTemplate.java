@@ -0,0 +1,169 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Template compiled to a list of literal and field segments, rendered without Velocity.
+ *
+ * Supports the subset of Velocity syntax used by ticket templates: references to the
+ * {@link TemplateContext} fields and $nl as $name, ${name}, $!name and $!{name}.
+ * Null value of a normal reference renders as the reference itself, like in Velocity.
+ * Templates using anything else (directives, comments, escapes, methods, properties,
+ * unknown references) are not compiled.
+ */
+public final class CompiledTemplate {
+
+	private final Segment[] segments;
+	private final int literalLength;
+	private final Set<TemplateField> referencedFields = EnumSet.noneOf(TemplateField.class);
+
+	private CompiledTemplate(List<Segment> segments) {
+		this.segments = segments.toArray(new Segment[segments.size()]);
+		int length = 0;
+		for(Segment segment : segments) {
+			if(segment.field == null) {
+				length += segment.text.length();
+			} else {
+				referencedFields.add(segment.field);
+			}
+		}
+		this.literalLength = length;
+	}
+
+	Set<TemplateField> getReferencedFields() {
+		return referencedFields;
+	}
+
+	/**
+	 * @return compiled template or null if the template uses unsupported syntax
+	 */
+	public static CompiledTemplate compile(String source) {
+		List<Segment> segments = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int i = 0;
+		while(i < source.length()) {
+			char c = source.charAt(i);
+			if(c == '#' || c == '\\') {
+				// directive, comment or escape
+				return null;
+			}
+			if(c != '$') {
+				literal.append(c);
+				i++;
+				continue;
+			}
+
+			int start = i++;
+			boolean quiet = i < source.length() && source.charAt(i) == '!';
+			if(quiet) {
+				i++;
+			}
+			boolean braced = i < source.length() && source.charAt(i) == '{';
+			if(braced) {
+				i++;
+			}
+			int nameStart = i;
+			if(i < source.length() && isIdentifierStart(source.charAt(i))) {
+				i++;
+				while(i < source.length() && isIdentifierPart(source.charAt(i))) {
+					i++;
+				}
+			}
+			if(i == nameStart) {
+				if(braced) {
+					return null;
+				}
+				// not a reference, e.g. "$ 10" or "$!"
+				literal.append(source, start, i);
+				continue;
+			}
+
+			TemplateField field = TemplateField.of(source.substring(nameStart, i));
+			if(field == null) {
+				return null;
+			}
+			if(braced) {
+				if(i >= source.length() || source.charAt(i) != '}') {
+					return null;
+				}
+				i++;
+			} else if(i < source.length() && (source.charAt(i) == '(' || source.charAt(i) == '['
+					|| (source.charAt(i) == '.' && i + 1 < source.length() && isIdentifierStart(source.charAt(i + 1))))) {
+				// method call, index or property
+				return null;
+			}
+
+			if(literal.length() > 0) {
+				segments.add(new Segment(literal.toString(), null, false));
+				literal.setLength(0);
+			}
+			segments.add(new Segment(source.substring(start, i), field, quiet));
+		}
+		if(literal.length() > 0) {
+			segments.add(new Segment(literal.toString(), null, false));
+		}
+		return new CompiledTemplate(segments);
+	}
+
+	public String render(TemplateContext templateContext) {
+		return render(templateContext, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Renders at most maxLength characters, rendering stops when the limit is reached.
+	 */
+	public String render(TemplateContext templateContext, int maxLength) {
+		// values are read twice, once to size the buffer and once to copy them
+		long length = literalLength;
+		for(Segment segment : segments) {
+			if(segment.field != null) {
+				CharSequence value = segment.field.value(templateContext);
+				length += value != null ? value.length() : segment.text.length();
+			}
+		}
+
+		StringBuilder out = new StringBuilder((int) Math.min(length, maxLength));
+		for(Segment segment : segments) {
+			CharSequence text = segment.text;
+			if(segment.field != null) {
+				CharSequence value = segment.field.value(templateContext);
+				if(value != null) {
+					text = value;
+				} else if(segment.quiet) {
+					continue;
+				}
+			}
+			int remaining = maxLength - out.length();
+			if(text.length() >= remaining) {
+				out.append(text, 0, remaining);
+				break;
+			}
+			out.append(text);
+		}
+		return out.toString();
+	}
+
+	private static boolean isIdentifierStart(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return isIdentifierStart(c) || (c >= '0' && c <= '9') || c == '_' || c == '-';
+	}
+
+	private static final class Segment {
+		// literal text or the reference as written in the template
+		private final String text;
+		private final TemplateField field;
+		private final boolean quiet;
+
+		private Segment(String text, TemplateField field, boolean quiet) {
+			this.text = text;
+			this.field = field;
+			this.quiet = quiet;
+		}
+	}
+}
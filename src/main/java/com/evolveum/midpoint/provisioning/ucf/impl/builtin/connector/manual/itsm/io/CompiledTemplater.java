@@ -0,0 +1,72 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Templater rendering simple templates without Velocity, see {@link CompiledTemplate}.
+ * Templates that can't be compiled are passed to the fallback templater.
+ */
+public class CompiledTemplater implements Templater {
+
+	private static final Trace LOGGER = TraceManager.getTrace(CompiledTemplater.class);
+
+	private final TemplateRepository templateRepository;
+	private final Templater fallback;
+
+	private final Map<String, Compilation> compilations = new ConcurrentHashMap<>();
+
+	public CompiledTemplater(TemplateRepository templateRepository, Templater fallback) {
+		this.templateRepository = templateRepository;
+		this.fallback = fallback;
+	}
+
+	@Override
+	public String fillFrom(String templateId, TemplateContext templateContext) {
+		return fillFrom(templateId, templateContext, null);
+	}
+
+	@Override
+	public String fillFrom(String templateId, TemplateContext templateContext, Integer maxLength) {
+		Compilation compilation = compilation(templateId);
+		CompiledTemplate compiled = compilation.template;
+		if(compiled == null) {
+			return fallback.fillFrom(templateId, templateContext, maxLength);
+		}
+		if(compilation.outputCache != null) {
+			return compilation.outputCache.output(templateContext, maxLength, 
+					() -> compiled.render(templateContext, maxLength != null ? maxLength : Integer.MAX_VALUE));
+		}
+		return compiled.render(templateContext, maxLength != null ? maxLength : Integer.MAX_VALUE);
+	}
+
+	private Compilation compilation(String templateId) {
+		String source = templateRepository.getTemplate(templateId);
+		Compilation compilation = compilations.get(templateId);
+		if(compilation == null || ! compilation.source.equals(source)) {
+			compilation = new Compilation(source, CompiledTemplate.compile(source));
+			if(compilation.template == null) {
+				LOGGER.debug("Template {} uses syntax not supported by compiled templates, using Velocity", templateId);
+			}
+			compilations.put(templateId, compilation);
+		}
+		return compilation;
+	}
+
+	private static final class Compilation {
+		private final String source;
+		// null if not supported
+		private final CompiledTemplate template;
+		// null if the output differs for each ticket
+		private final TemplateOutputCache outputCache;
+
+		private Compilation(String source, CompiledTemplate template) {
+			this.source = source;
+			this.template = template;
+			this.outputCache = template != null ? TemplateOutputCache.forFields(template.getReferencedFields()) : null;
+		}
+	}
+}
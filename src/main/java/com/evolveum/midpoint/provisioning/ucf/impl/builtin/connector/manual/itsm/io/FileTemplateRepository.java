@@ -0,0 +1,165 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Templates stored in files &lt;template id&gt;.vm of a directory, templates without a file
+ * are taken from the default repository (the connector configuration).
+ *
+ * The directory is watched and changed templates are reloaded without reconfiguring the
+ * connector. Templates are replaced atomically, a ticket being rendered keeps using the
+ * template it started with. Unchanged templates are returned as the same String instance,
+ * so templaters recompile only the changed ones.
+ */
+public class FileTemplateRepository implements TemplateRepository, Closeable {
+
+	private static final Trace LOGGER = TraceManager.getTrace(FileTemplateRepository.class);
+
+	private static final String TEMPLATE_SUFFIX = ".vm";
+
+	private final Path directory;
+	private final TemplateRepository defaults;
+
+	// never modified, replaced as a whole
+	private volatile Map<String, String> templates = Collections.emptyMap();
+
+	private WatchService watchService;
+
+	private FileTemplateRepository(Path directory, TemplateRepository defaults) {
+		this.directory = directory;
+		this.defaults = defaults;
+	}
+
+	/**
+	 * Loads templates from the directory and starts watching it.
+	 */
+	public static FileTemplateRepository open(Path directory, TemplateRepository defaults) throws IOException {
+		FileTemplateRepository repository = new FileTemplateRepository(directory, defaults);
+		repository.watchService = directory.getFileSystem().newWatchService();
+		// registered before loading, so no change is missed
+		directory.register(repository.watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+		repository.loadAll();
+
+		Thread watcher = new Thread(repository::watch, "itsm-templates-" + directory.getFileName());
+		watcher.setDaemon(true);
+		watcher.start();
+		return repository;
+	}
+
+	@Override
+	public String getTemplate(String id) {
+		String template = templates.get(id);
+		return template != null ? template : defaults.getTemplate(id);
+	}
+
+	@Override
+	public void close() {
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			LOGGER.error("Error closing template directory watcher, ignoring as non fatal.", e);
+		}
+	}
+
+	private void watch() {
+		try {
+			while(true) {
+				WatchKey key = watchService.take();
+				for(WatchEvent<?> event : key.pollEvents()) {
+					try {
+						if(event.kind() == OVERFLOW) {
+							loadAll();
+						} else {
+							reload(directory.resolve((Path) event.context()));
+						}
+					} catch (IOException | RuntimeException e) {
+						// e.g. the file is being replaced by an editor, its next change is loaded again
+						LOGGER.error("Couldn't reload templates from {}, keeping the loaded ones", directory, e);
+					}
+				}
+				if( ! key.reset()) {
+					LOGGER.warn("Template directory {} is no longer accessible, templates won't be reloaded", directory);
+					return;
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// closed with the connector
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			LOGGER.error("Watching template directory {} failed, templates won't be reloaded", directory, e);
+		}
+	}
+
+	private synchronized void loadAll() throws IOException {
+		Map<String, String> loaded = new HashMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + TEMPLATE_SUFFIX)) {
+			for(Path file : files) {
+				String template = read(file);
+				if(template != null) {
+					loaded.put(templateId(file), template);
+				}
+			}
+		}
+		templates = Collections.unmodifiableMap(loaded);
+		LOGGER.debug("Loaded templates {} from {}", loaded.keySet(), directory);
+	}
+
+	private synchronized void reload(Path file) throws IOException {
+		if( ! file.getFileName().toString().endsWith(TEMPLATE_SUFFIX)) {
+			return;
+		}
+		String id = templateId(file);
+		String template = read(file);
+		if(template != null && template.equals(templates.get(id))) {
+			// e.g. second event of the same write
+			return;
+		}
+
+		Map<String, String> reloaded = new HashMap<>(templates);
+		if(template != null) {
+			reloaded.put(id, template);
+		} else {
+			reloaded.remove(id);
+		}
+		templates = Collections.unmodifiableMap(reloaded);
+		LOGGER.info("Template {} reloaded from {}", id, file);
+	}
+
+	/**
+	 * @return template or null if the file doesn't exist
+	 */
+	private static String read(Path file) throws IOException {
+		try {
+			return new String(Files.readAllBytes(file), UTF_8);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private static String templateId(Path file) {
+		String name = file.getFileName().toString();
+		return name.substring(0, name.length() - TEMPLATE_SUFFIX.length());
+	}
+}
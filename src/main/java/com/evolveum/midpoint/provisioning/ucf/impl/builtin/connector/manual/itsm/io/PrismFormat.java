@@ -1,15 +1,17 @@
 package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
 
-import static java.util.stream.Collectors.joining;
 import static org.apache.commons.collections4.CollectionUtils.isEmpty;
 import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.stream.IntStream;
 
 import com.evolveum.midpoint.prism.Containerable;
 import com.evolveum.midpoint.prism.Item;
@@ -32,6 +34,7 @@ import com.evolveum.midpoint.xml.ns._public.common.common_3.ShadowType;
 
 /**
  * Converts various prism types used in connector to Strings usable in itsm ticket.
+ * Large values (attributes, deltas) are appended straight into the caller's buffer.
  * 
  * @author Arnost Starosta
  */
@@ -39,64 +42,123 @@ public class PrismFormat {
 	
     private static ResourceBundle messages = ResourceBundle.getBundle("ItsmMessages");
 
+	/**
+	 * Value limit formatting all values of an attribute or delta.
+	 */
+	public static final int ALL_VALUES = Integer.MAX_VALUE;
+
+	/**
+	 * Length limit formatting everything.
+	 */
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	// operations formatted sequentially by one parallel task
+	private static final int PARALLEL_CHUNK_SIZE = 64;
+
 	public static String propertyValue(PrismPropertyValue<?> propertyValue) {
 		return propertyValue.getValue().toString();
 	}
 	
 	public static String valueCollection(String msg, Collection<?> values) {
+		StringBuilder out = new StringBuilder();
+		appendValueCollection(out, msg, values, ALL_VALUES);
+		return out.toString();
+	}
+
+	/**
+	 * @param maxValues number of distinct values formatted, the rest is only counted
+	 */
+	public static void appendValueCollection(StringBuilder out, String msg, Collection<?> values, int maxValues) {
+		appendValueCollection(out, msg, values, maxValues, UNLIMITED);
+	}
+
+	private static void appendValueCollection(StringBuilder out, String msg, Collection<?> values, int maxValues, 
+			int limit) {
 		if(isNotEmpty(values)) {
-			
-			return "  " + msg + " [" + 
-			        joinedDistinctStringValues(values) +
-					"]";
-		} else {
-			return "";
+			out.append("  ").append(msg).append(" [");
+			appendDistinctStringValues(out, values, maxValues, limit);
+			out.append(']');
 		}
 	}
 
-    private static String joinedDistinctStringValues(Collection<?> values) {
+    private static void appendDistinctStringValues(StringBuilder out, Collection<?> values, int maxValues, int limit) {
         if(values == null) {
-            return "";
+            return;
+        }
+
+        // in the order of the first occurrence, only the formatted values are remembered
+        Set<String> distinct = new HashSet<>();
+        int processed = 0;
+        for(Object value : values) {
+            if(distinct.size() >= maxValues || out.length() >= limit) {
+                break;
+            }
+            processed++;
+            String string = stringValue(value);
+            if(distinct.add(string)) {
+                if(distinct.size() > 1) {
+                    out.append(',');
+                }
+                out.append(string);
+            }
         }
-        
-        return stringValues(values)
-                .distinct()
-                .collect(joining(","));
+        appendMoreValues(out, values.size() - processed, values.size());
     }
 
-    private static Stream<String> stringValues(Collection<?> values) {
-        return values.stream()
-        .map(value -> value instanceof PrismPropertyValue<?> ? 
+    /**
+     * Summary of values not formatted, they are not checked for duplicates.
+     */
+    private static void appendMoreValues(StringBuilder out, int more, int total) {
+        if(more > 0) {
+            out.append(',').append(MessageFormat.format(msg("format.moreValues"), more, total));
+        }
+    }
+
+    private static String stringValue(Object value) {
+        return value instanceof PrismPropertyValue<?> ? 
                 propertyValue((PrismPropertyValue<?>)value) 
-                : value.toString());
+                : value.toString();
     }
 
 	public static String deltaOperation(Operation operation) {
+		StringBuilder out = new StringBuilder();
+		appendDeltaOperation(out, operation, ALL_VALUES);
+		return out.toString();
+	}
+
+	/**
+	 * @param maxValues number of distinct values formatted for each of add, delete and replace
+	 */
+	public static void appendDeltaOperation(StringBuilder out, Operation operation, int maxValues) {
+		appendDeltaOperation(out, operation, maxValues, UNLIMITED);
+	}
+
+	/**
+	 * @param limit length of out at which formatting of values stops
+	 */
+	private static void appendDeltaOperation(StringBuilder out, Operation operation, int maxValues, int limit) {
 		if(operation == null) {
-			return "null";
+			out.append("null");
 		} else {
 			if(operation instanceof ExecuteProvisioningScriptOperation) {
-				return msg("delta.executeScript") + " : " + operation.toString();
+				out.append(msg("delta.executeScript")).append(" : ").append(operation.toString());
 			} else if(operation instanceof PasswordChangeOperation) {
-				return msg("delta.changePassword") + " : " + operation.toString();
+				out.append(msg("delta.changePassword")).append(" : ").append(operation.toString());
 			} else if(operation instanceof PropertyModificationOperation) {
 				
 				PropertyDelta<?> d = ((PropertyModificationOperation<?>)operation).getPropertyDelta(); 
-				StringBuffer result = new StringBuffer();
-				result.append(d.getElementName().getLocalPart());
-				result.append(" : \n");
+				out.append(d.getElementName().getLocalPart());
+				out.append(" : \n");
 				
 				if(hasNoValue(d)) {
-					result.append("  " + msg("delta.emptyValue"));
+					out.append("  ").append(msg("delta.emptyValue"));
 				} else {
-					append(result, msg("delta.addValues"), d.getValuesToAdd());
-					append(result, msg("delta.deleteValues"), d.getValuesToDelete());
-					append(result, msg("delta.replaceValues"), d.getValuesToReplace());
+					append(out, msg("delta.addValues"), d.getValuesToAdd(), maxValues, limit);
+					append(out, msg("delta.deleteValues"), d.getValuesToDelete(), maxValues, limit);
+					append(out, msg("delta.replaceValues"), d.getValuesToReplace(), maxValues, limit);
 				}				
-				
-				return result.toString();
 			} else {
-				return operation.debugDump();
+				out.append(operation.debugDump());
 			}
 		}
 	}
@@ -108,10 +170,10 @@ public class PrismFormat {
 				&& isEmpty(d.getValuesToReplace()));
 	}
 
-	private static void append(StringBuffer buffer, String msg, Collection<?> values) {
-		if(values != null && ! values.isEmpty()) {
-			buffer.append(valueCollection(msg, values));
-			buffer.append("\n");
+	private static void append(StringBuilder out, String msg, Collection<?> values, int maxValues, int limit) {
+		if(values != null && ! values.isEmpty() && out.length() < limit) {
+			appendValueCollection(out, msg, values, maxValues, limit);
+			out.append("\n");
 		}
 	}
 
@@ -119,26 +181,29 @@ public class PrismFormat {
 		return messages.getString(key);
 	}
 	
-	// create account attributes formatting
-	public static List<String> attributesList(PrismObject<? extends ShadowType> object) {
-        AttributesCollectingVisitor attributeCollector = new AttributesCollectingVisitor();
+	/**
+	 * Create account attributes formatting, appends attributes and administrative status, one per line.
+	 *
+	 * @param maxValues number of values formatted for each attribute, the rest is only counted
+	 * @param maxLength number of characters appended at most, formatting stops when it is reached
+	 */
+	public static void appendAttributes(StringBuilder out, PrismObject<? extends ShadowType> object, int maxValues,
+			int maxLength) {
+		int limit = limit(out, maxLength);
+        AttributesAppendingVisitor attributeAppender = new AttributesAppendingVisitor(out, maxValues, limit);
 
 		PrismContainer<Containerable> attributesContainer = object.findContainer(ShadowType.F_ATTRIBUTES);
-        attributesContainer.accept(attributeCollector);
-		
-        List<String> result = attributeCollector.getAttributes();
+        attributesContainer.accept(attributeAppender);
 
         PrismContainer<Containerable> activationContainer = object.findContainer(ShadowType.F_ACTIVATION);
 		if(activationContainer != null) {
 	        Item<PrismValue, ItemDefinition> adminStatus = activationContainer.findItem(ActivationType.F_ADMINISTRATIVE_STATUS);
-	        if(adminStatus != null) {
-	            result.add(attribute(
-	                        msg("operation.create.statusAttribute"), 
-	                        joinedDistinctStringValues(adminStatus.getValues())));
+	        if(adminStatus != null && out.length() < limit) {
+	            attributeAppender.startAttribute(msg("operation.create.statusAttribute"));
+	            appendDistinctStringValues(out, adminStatus.getValues(), maxValues, limit);
 	        }
 		}
-
-        return result;
+		cut(out, limit);
 	}
 
 	public static <V, T extends ResourceAttribute<V>> String resourceAttributeValue(T attr) {
@@ -156,35 +221,145 @@ public class PrismFormat {
 	}
 	
 	public static String operations(Collection<Operation> changes) {
-		return changes.stream()
-				.map(PrismFormat::deltaOperation)
-				.collect(Collectors.joining("\n"));
+		StringBuilder out = new StringBuilder(estimatedLength(changes));
+		appendOperations(out, changes, ALL_VALUES, UNLIMITED);
+		return out.toString();
 	}
 
-    private static String attribute(String key, Object attributeValues) {
-        return key + ":\t" + attributeValues;
-    }
+	/**
+	 * Appends the operations, one after another on separate lines.
+	 *
+	 * @param maxValues number of distinct values formatted for each of add, delete and replace
+	 * @param maxLength number of characters appended at most, formatting stops when it is reached
+	 */
+	public static void appendOperations(StringBuilder out, Collection<Operation> changes, int maxValues, 
+			int maxLength) {
+		int limit = limit(out, maxLength);
+		boolean first = true;
+		for(Operation change : changes) {
+			if(out.length() >= limit) {
+				break;
+			}
+			if( ! first) {
+				out.append('\n');
+			}
+			appendDeltaOperation(out, change, maxValues, limit);
+			first = false;
+		}
+		cut(out, limit);
+	}
+
+	/**
+	 * Same as {@link #appendOperations(StringBuilder, Collection, int, int)}, but at least parallelThreshold
+	 * operations are formatted in parallel in the common fork/join pool. Chunks of operations are
+	 * formatted separately and appended in the original order, so the output is the same.
+	 */
+	public static void appendOperations(StringBuilder out, Collection<Operation> changes, int maxValues, 
+			int maxLength, int parallelThreshold) {
+		if(changes.size() < parallelThreshold || changes.size() <= PARALLEL_CHUNK_SIZE
+				|| estimatedLength(changes) > maxLength) {
+			// likely cut, sequential formatting stops at the limit, parallel formatting would format everything
+			appendOperations(out, changes, maxValues, maxLength);
+			return;
+		}
+
+		List<Operation> operations = new ArrayList<>(changes);
+		int chunks = (operations.size() + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+		// ordered stream, chunks are collected in the order of operations
+		List<StringBuilder> formatted = IntStream.range(0, chunks)
+				.parallel()
+				.mapToObj(chunk -> {
+					List<Operation> chunkOperations = operations.subList(
+							chunk * PARALLEL_CHUNK_SIZE, Math.min(operations.size(), (chunk + 1) * PARALLEL_CHUNK_SIZE));
+					StringBuilder chunkOut = new StringBuilder(estimatedLength(chunkOperations));
+					appendOperations(chunkOut, chunkOperations, maxValues, maxLength);
+					return chunkOut;
+				})
+				.collect(Collectors.toList());
 
-    private static final class AttributesCollectingVisitor implements Visitor {
-        private final List<String> attributes = new ArrayList<String>();
+		int limit = limit(out, maxLength);
+		int length = 0;
+		for(StringBuilder chunkOut : formatted) {
+			length += chunkOut.length() + 1;
+		}
+		out.ensureCapacity(Math.min(limit, out.length() + length));
+		boolean first = true;
+		for(StringBuilder chunkOut : formatted) {
+			if(out.length() >= limit) {
+				break;
+			}
+			if( ! first) {
+				out.append('\n');
+			}
+			out.append(chunkOut);
+			first = false;
+		}
+		cut(out, limit);
+	}
+
+	/**
+	 * @return length of out at which appending stops
+	 */
+	private static int limit(StringBuilder out, int maxLength) {
+		return maxLength >= Integer.MAX_VALUE - out.length() ? Integer.MAX_VALUE : out.length() + maxLength;
+	}
+
+	/**
+	 * Cuts the value that was being appended when the limit was reached.
+	 */
+	private static void cut(StringBuilder out, int limit) {
+		if(out.length() > limit) {
+			out.setLength(limit);
+		}
+	}
+
+	/**
+	 * Rough size of formatted operations, used to presize the buffer.
+	 */
+	public static int estimatedLength(Collection<Operation> changes) {
+		return 128 * changes.size();
+	}
+
+    private static final class AttributesAppendingVisitor implements Visitor {
+        private final StringBuilder out;
+        private final int maxValues;
+        private final int limit;
+        private boolean first = true;
+
+        private AttributesAppendingVisitor(StringBuilder out, int maxValues, int limit) {
+            this.out = out;
+            this.maxValues = maxValues;
+            this.limit = limit;
+        }
 
         @Override
         public void visit(Visitable visitable) {
-            if(visitable instanceof ResourceAttribute) {
+            // the container can't stop visiting, the remaining attributes are skipped
+            if(visitable instanceof ResourceAttribute && out.length() < limit) {
                 ResourceAttribute<?> attr = (ResourceAttribute<?>)visitable;
-                
-                Object attributeValues = attr.getValues().stream().map(value ->
-                    value instanceof PrismPropertyValue ? 
-                            PrismFormat.propertyValue((PrismPropertyValue<?>)value) :
-                            value.toString()
-                ).collect(Collectors.joining(","));
-                
-                attributes.add(attribute(attr.getElementName().getLocalPart(), attributeValues));
+                startAttribute(attr.getElementName().getLocalPart());
+
+                int formatted = 0;
+                for(Object value : attr.getValues()) {
+                    if(formatted >= maxValues || out.length() >= limit) {
+                        break;
+                    }
+                    if(formatted > 0) {
+                        out.append(',');
+                    }
+                    out.append(stringValue(value));
+                    formatted++;
+                }
+                appendMoreValues(out, attr.getValues().size() - formatted, attr.getValues().size());
             }
         }
 
-        public List<String> getAttributes() {
-            return attributes;
+        private void startAttribute(String key) {
+            if( ! first) {
+                out.append('\n');
+            }
+            out.append(key).append(":\t");
+            first = false;
         }
     }
 }
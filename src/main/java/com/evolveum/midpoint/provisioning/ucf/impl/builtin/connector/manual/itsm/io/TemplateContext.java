@@ -7,7 +7,8 @@ public class TemplateContext {
 	
 	private String cIName;
 	private String operation;
-	private String accountChanges;
+	// usually a buffer the changes were formatted into, not copied until needed as String
+	private CharSequence accountChanges;
 	private String identifier;
 	
 	public String getcIName() {
@@ -23,11 +24,14 @@ public class TemplateContext {
 		this.operation = operation;
 	}
 	public String getAccountChanges() {
-		return accountChanges;
+		return accountChanges != null ? accountChanges.toString() : null;
 	}
-	public void setAccountChanges(String accountValue) {
+	public void setAccountChanges(CharSequence accountValue) {
 		this.accountChanges = accountValue;
 	}
+	CharSequence getAccountChangesSequence() {
+		return accountChanges;
+	}
 	public String getIdentifier() {
 		return this.identifier;
 	}
@@ -0,0 +1,53 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
+
+/**
+ * Values a template can reference.
+ */
+enum TemplateField {
+	OPERATION("operation", true),
+	CI_NAME("cIName", true),
+	IDENTIFIER("identifier", false),
+	ACCOUNT_CHANGES("accountChanges", false),
+	NL("nl", true);
+
+	private final String reference;
+	// same for all tickets of the same operation
+	private final boolean invariant;
+
+	TemplateField(String reference, boolean invariant) {
+		this.reference = reference;
+		this.invariant = invariant;
+	}
+
+	String getReference() {
+		return reference;
+	}
+
+	boolean isInvariant() {
+		return invariant;
+	}
+
+	CharSequence value(TemplateContext templateContext) {
+		switch(this) {
+			case OPERATION:
+				return templateContext.getOperation();
+			case CI_NAME:
+				return templateContext.getcIName();
+			case IDENTIFIER:
+				return templateContext.getIdentifier();
+			case ACCOUNT_CHANGES:
+				return templateContext.getAccountChangesSequence();
+			default:
+				return "\n";
+		}
+	}
+
+	static TemplateField of(String reference) {
+		for(TemplateField field : values()) {
+			if(field.reference.equals(reference)) {
+				return field;
+			}
+		}
+		return null;
+	}
+}
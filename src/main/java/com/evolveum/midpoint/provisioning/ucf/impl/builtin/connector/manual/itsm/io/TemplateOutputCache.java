@@ -0,0 +1,66 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Output of one template that references only invariant fields, e.g. the operation, cached by
+ * the values of those fields. Such output is the same for all tickets of the same operation.
+ */
+final class TemplateOutputCache {
+
+	private static final int MAX_OUTPUTS = 64;
+
+	private final TemplateField[] fields;
+
+	private final Map<List<Object>, String> outputs = new LinkedHashMap<List<Object>, String>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<List<Object>, String> eldest) {
+			return size() > MAX_OUTPUTS;
+		}
+	};
+
+	private TemplateOutputCache(Collection<TemplateField> fields) {
+		this.fields = fields.toArray(new TemplateField[fields.size()]);
+	}
+
+	/**
+	 * @return cache for template referencing the fields, null if some of them is not invariant
+	 */
+	static TemplateOutputCache forFields(Collection<TemplateField> fields) {
+		for(TemplateField field : fields) {
+			if( ! field.isInvariant()) {
+				return null;
+			}
+		}
+		return new TemplateOutputCache(fields);
+	}
+
+	String output(TemplateContext templateContext, Integer maxLength, Supplier<String> renderer) {
+		List<Object> key = new ArrayList<>(fields.length + 1);
+		key.add(maxLength);
+		for(TemplateField field : fields) {
+			CharSequence value = field.value(templateContext);
+			key.add(value != null ? value.toString() : null);
+		}
+
+		synchronized (outputs) {
+			String output = outputs.get(key);
+			if(output != null) {
+				return output;
+			}
+		}
+		// rendered outside of the lock, concurrent rendering of the same output is harmless
+		String output = renderer.get();
+		synchronized (outputs) {
+			outputs.put(key, output);
+		}
+		return output;
+	}
+}
@@ -4,4 +4,18 @@ public interface Templater {
 
 	String fillFrom(String templateId, TemplateContext templateContext);
 
+	/**
+	 * Fills the template, output longer than maxLength is cut. Implementations should stop
+	 * rendering when the limit is reached instead of rendering everything and cutting it.
+	 *
+	 * @param maxLength maximal output length, null if not limited
+	 */
+	default String fillFrom(String templateId, TemplateContext templateContext, Integer maxLength) {
+		String output = fillFrom(templateId, templateContext);
+		if(maxLength != null && output.length() > maxLength) {
+			return output.substring(0, maxLength);
+		}
+		return output;
+	}
+
 }
@@ -2,32 +2,152 @@ package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.its
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.velocity.Template;
 import org.apache.velocity.VelocityContext;
-import org.apache.velocity.app.Velocity;
 import org.apache.velocity.context.Context;
+import org.apache.velocity.exception.ParseErrorException;
+import org.apache.velocity.runtime.RuntimeInstance;
+import org.apache.velocity.runtime.parser.ParseException;
+import org.apache.velocity.runtime.parser.node.ASTDirective;
+import org.apache.velocity.runtime.parser.node.ASTReference;
+import org.apache.velocity.runtime.parser.node.ASTStringLiteral;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
 
+/**
+ * Templater using its own Velocity engine. Each template is parsed once and the parsed
+ * template is reused for all tickets, it is parsed again only if its source changes.
+ * New templater (and cache) is created on every connector configuration.
+ *
+ * Output of templates referencing only fields that are the same for all tickets of an operation
+ * (e.g. the description) is rendered once and reused.
+ */
 public class TemplaterVelocityImpl implements Templater {
 
-	private TemplateRepository templateRepository; 
-	
+	private TemplateRepository templateRepository;
+
+	private final RuntimeInstance velocity;
+
+	private final Map<String, ParsedTemplate> parsedTemplates = new ConcurrentHashMap<>();
+
 	public TemplaterVelocityImpl(TemplateRepository templateRepository) {
 		this.templateRepository = templateRepository;
+		this.velocity = new RuntimeInstance();
+		this.velocity.init();
 	}
-	
+
 	@Override
 	public String fillFrom(String templateId, TemplateContext templateContext) {
-		String template = templateRepository.getTemplate(templateId);
-		
+		return fillFrom(templateId, templateContext, null);
+	}
+
+	@Override
+	public String fillFrom(String templateId, TemplateContext templateContext, Integer maxLength) {
+		ParsedTemplate parsed = parsedTemplate(templateId);
+		if(parsed.outputCache != null) {
+			return parsed.outputCache.output(templateContext, maxLength, 
+					() -> render(parsed.template, templateContext, maxLength));
+		}
+		return render(parsed.template, templateContext, maxLength);
+	}
+
+	private String render(Template template, TemplateContext templateContext, Integer maxLength) {
+		if(maxLength == null) {
+			StringWriter out = new StringWriter();
+			merge(template, templateContext, out);
+			return out.toString();
+		}
+		// the writer aborts rendering when the limit is reached
+		LimitedWriter out = new LimitedWriter(maxLength);
+		try {
+			merge(template, templateContext, out);
+		} catch (RuntimeException e) {
+			if( ! isLimitReached(e)) {
+				throw e;
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Velocity may wrap the exception thrown by the writer.
+	 */
+	private static boolean isLimitReached(Throwable e) {
+		for(Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if(cause == LimitReachedException.INSTANCE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void merge(Template template, TemplateContext templateContext, Writer out) {
 		Context ctx = new VelocityContext();
-		
+
 		// set nl as newline to avoid the ugly formatting in xml
 		ctx.put("nl", "\n");
-		
+
 		fill(ctx, templateContext);
-		StringWriter out = new StringWriter();
-		Velocity.evaluate(ctx, out, templateId, new StringReader(template));
-		return out.toString();
+		template.merge(ctx, out);
+	}
+
+	private ParsedTemplate parsedTemplate(String templateId) {
+		String source = templateRepository.getTemplate(templateId);
+		ParsedTemplate parsed = parsedTemplates.get(templateId);
+		if(parsed == null || ! parsed.source.equals(source)) {
+			// parsing the same template twice concurrently is harmless
+			parsed = new ParsedTemplate(source, parse(templateId, source));
+			parsedTemplates.put(templateId, parsed);
+		}
+		return parsed;
+	}
+
+	private Template parse(String templateId, String source) {
+		SimpleNode document;
+		try {
+			document = velocity.parse(new StringReader(source), templateId);
+		} catch (ParseException e) {
+			throw new ParseErrorException(e);
+		}
+		Template template = new Template();
+		template.setName(templateId);
+		template.setRuntimeServices(velocity);
+		template.setData(document);
+		template.initDocument();
+		return template;
+	}
+
+	/**
+	 * Collects fields referenced by the template.
+	 *
+	 * @return false if the template output may depend on something else than the referenced fields,
+	 * i.e. it uses directives or interpolated string literals
+	 */
+	private static boolean collectReferencedFields(Node node, Set<TemplateField> fields) {
+		if(node instanceof ASTDirective) {
+			return false;
+		}
+		if(node instanceof ASTStringLiteral && node.literal().indexOf('$') >= 0) {
+			return false;
+		}
+		if(node instanceof ASTReference) {
+			TemplateField field = TemplateField.of(((ASTReference) node).getRootString());
+			if(field != null) {
+				fields.add(field);
+			}
+		}
+		for(int i = 0; i < node.jjtGetNumChildren(); i++) {
+			if( ! collectReferencedFields(node.jjtGetChild(i), fields)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	private void fill(Context ctx, TemplateContext templateContext) {
@@ -37,4 +157,85 @@ public class TemplaterVelocityImpl implements Templater {
 		ctx.put("identifier", templateContext.getIdentifier());
 	}
 
+	/**
+	 * Keeps the first maxLength characters and aborts the rendering with {@link LimitReachedException}
+	 * when more is written.
+	 */
+	private static final class LimitedWriter extends Writer {
+		private final StringBuilder out;
+		private final int maxLength;
+
+		private LimitedWriter(int maxLength) {
+			this.out = new StringBuilder(Math.min(maxLength, 256));
+			this.maxLength = maxLength;
+		}
+
+		@Override
+		public void write(char[] buffer, int offset, int length) {
+			int kept = Math.min(length, maxLength - out.length());
+			if(kept > 0) {
+				out.append(buffer, offset, kept);
+			}
+			if(kept < length) {
+				throw LimitReachedException.INSTANCE;
+			}
+		}
+
+		@Override
+		public void write(String text, int offset, int length) {
+			int kept = Math.min(length, maxLength - out.length());
+			if(kept > 0) {
+				out.append(text, offset, offset + kept);
+			}
+			if(kept < length) {
+				throw LimitReachedException.INSTANCE;
+			}
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public String toString() {
+			return out.toString();
+		}
+	}
+
+	/**
+	 * Thrown by the writer to stop rendering, without stack trace as it is not an error.
+	 */
+	private static final class LimitReachedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final LimitReachedException INSTANCE = new LimitReachedException();
+
+		private LimitReachedException() {
+			super("Template output limit reached", null, false, false);
+		}
+	}
+
+	private static final class ParsedTemplate {
+		private final String source;
+		private final Template template;
+		// null if the output differs for each ticket
+		private final TemplateOutputCache outputCache;
+
+		private ParsedTemplate(String source, Template template) {
+			this.source = source;
+			this.template = template;
+
+			Set<TemplateField> fields = EnumSet.noneOf(TemplateField.class);
+			if(collectReferencedFields((Node) template.getData(), fields)) {
+				this.outputCache = TemplateOutputCache.forFields(fields);
+			} else {
+				this.outputCache = null;
+			}
+		}
+	}
 }
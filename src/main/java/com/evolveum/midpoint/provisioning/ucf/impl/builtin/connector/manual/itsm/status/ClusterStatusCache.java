@@ -0,0 +1,119 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.SharedStatusStore.SharedStatus;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Ticket statuses shared by the connector instances of all cluster nodes. Every node publishes
+ * the statuses it polls, nodes use a recent status published by another node instead of polling.
+ *
+ * This is a cache, not a split of the polling work: nobody polls a ticket that no node asks about,
+ * and a node asking about a ticket without a recent shared status polls it itself. To keep nodes
+ * from polling the same ticket in turns, each ticket has a preferred node among the live ones
+ * (consistent hashing of the incident number). The preferred node always polls and the other
+ * nodes take its published status.
+ *
+ * Membership is refreshed by a heartbeat in the background, independently of the queries.
+ */
+public class ClusterStatusCache implements Closeable {
+
+	private static final Trace LOGGER = TraceManager.getTrace(ClusterStatusCache.class);
+
+	// node missing this many heartbeats is considered gone
+	private static final int MISSED_HEARTBEATS = 3;
+
+	private final SharedStatusStore store;
+	private final String nodeId;
+	private final long heartbeatIntervalMillis;
+	private final long statusMaxAgeMillis;
+
+	private final ScheduledExecutorService heartbeat;
+
+	private volatile ConsistentHashRing ring;
+	private volatile Set<String> nodes = Collections.emptySet();
+
+	public ClusterStatusCache(SharedStatusStore store, String nodeId,
+			long heartbeatIntervalMillis, long statusMaxAgeMillis) {
+		this.store = store;
+		this.nodeId = nodeId;
+		this.heartbeatIntervalMillis = heartbeatIntervalMillis;
+		this.statusMaxAgeMillis = statusMaxAgeMillis;
+		this.ring = new ConsistentHashRing(Collections.singleton(nodeId));
+		this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "itsm-cluster-heartbeat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		heartbeat.scheduleWithFixedDelay(this::refreshMembership, 0, heartbeatIntervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return true if this node is the preferred poller of the ticket
+	 */
+	public boolean isPreferredNode(String ticketId) {
+		return nodeId.equals(ring.owner(ticketId));
+	}
+
+	/**
+	 * @return status published by any node if it is recent enough, null otherwise
+	 */
+	public TicketStatus sharedStatus(String ticketId) {
+		try {
+			SharedStatus shared = store.lookup(ticketId);
+			if(shared == null) {
+				return null;
+			}
+			if( ! shared.getStatus().isFinal()
+					&& shared.getPublishedAt() + statusMaxAgeMillis < System.currentTimeMillis()) {
+				return null;
+			}
+			return shared.getStatus();
+		} catch (IOException e) {
+			LOGGER.warn("Couldn't read shared status of {}, polling it: {}", ticketId, e.getMessage());
+			return null;
+		}
+	}
+
+	public void publish(String ticketId, TicketStatus status) {
+		try {
+			store.publish(ticketId, status);
+		} catch (IOException e) {
+			LOGGER.warn("Couldn't publish status of {}: {}", ticketId, e.getMessage());
+		}
+	}
+
+	/**
+	 * Stops the heartbeat, other nodes take over the preferred tickets after the missed heartbeats.
+	 */
+	@Override
+	public void close() {
+		heartbeat.shutdownNow();
+	}
+
+	private void refreshMembership() {
+		try {
+			store.heartbeat(nodeId);
+			Set<String> live = new HashSet<>(store.liveNodes(MISSED_HEARTBEATS * heartbeatIntervalMillis));
+			live.add(nodeId);
+			if( ! live.equals(nodes)) {
+				LOGGER.debug("Itsm cluster nodes changed to {}", live);
+				ring = new ConsistentHashRing(live);
+				nodes = live;
+			}
+		} catch (IOException | RuntimeException e) {
+			// keep the last known membership
+			LOGGER.warn("Couldn't refresh Itsm cluster membership: {}", e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns keys to nodes by consistent hashing. When a node joins or leaves,
+ * only keys of that node move, the rest keeps its owner.
+ *
+ * Hash must be the same on all nodes, String.hashCode is too clustered, so md5 is used.
+ */
+public class ConsistentHashRing {
+
+	// points per node, smooths the distribution of keys
+	private static final int VIRTUAL_NODES = 128;
+
+	private final TreeMap<Long, String> ring = new TreeMap<>();
+
+	public ConsistentHashRing(Collection<String> nodes) {
+		for(String node : nodes) {
+			for(int i = 0; i < VIRTUAL_NODES; i++) {
+				ring.put(hash(node + "#" + i), node);
+			}
+		}
+	}
+
+	/**
+	 * @return node owning the key, null if the ring is empty
+	 */
+	public String owner(String key) {
+		if(ring.isEmpty()) {
+			return null;
+		}
+		Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+		return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	private static long hash(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes(UTF_8));
+			long hash = 0;
+			for(int i = 0; i < 8; i++) {
+				hash = (hash << 8) | (digest[i] & 0xff);
+			}
+			return hash;
+		} catch (NoSuchAlgorithmException e) {
+			// every java platform has md5
+			throw new IllegalStateException(e);
+		}
+	}
+}
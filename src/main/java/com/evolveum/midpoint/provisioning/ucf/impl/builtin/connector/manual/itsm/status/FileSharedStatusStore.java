@@ -0,0 +1,104 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ConnectorAttributeUtils;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+
+/**
+ * Shared store in a directory visible to all nodes, e.g. a network share.
+ *
+ * Node heartbeat is the modification time of nodes/&lt;nodeId&gt;, ticket status is the content
+ * of statuses/&lt;prefix&gt;/&lt;ticketId&gt; and its modification time is the publication time.
+ * Files are replaced atomically, readers never see partial content.
+ */
+public class FileSharedStatusStore implements SharedStatusStore {
+
+	private final Path nodesDirectory;
+	private final Path statusesDirectory;
+
+	public FileSharedStatusStore(Path directory) throws IOException {
+		this.nodesDirectory = Files.createDirectories(directory.resolve("nodes"));
+		this.statusesDirectory = Files.createDirectories(directory.resolve("statuses"));
+	}
+
+	@Override
+	public void heartbeat(String nodeId) throws IOException {
+		Path node = nodesDirectory.resolve(fileName(nodeId));
+		if(Files.exists(node)) {
+			Files.setLastModifiedTime(node, FileTime.fromMillis(System.currentTimeMillis()));
+		} else {
+			writeAtomically(node, nodeId);
+		}
+	}
+
+	@Override
+	public Set<String> liveNodes(long maxAgeMillis) throws IOException {
+		long oldestAllowed = System.currentTimeMillis() - maxAgeMillis;
+		Set<String> live = new HashSet<>();
+		try (DirectoryStream<Path> nodes = Files.newDirectoryStream(nodesDirectory)) {
+			for(Path node : nodes) {
+				try {
+					if(Files.getLastModifiedTime(node).toMillis() >= oldestAllowed) {
+						live.add(new String(Files.readAllBytes(node), UTF_8));
+					}
+				} catch (NoSuchFileException e) {
+					// removed meanwhile
+				}
+			}
+		}
+		return live;
+	}
+
+	@Override
+	public void publish(String ticketId, TicketStatus status) throws IOException {
+		Path file = statusFile(ticketId);
+		Files.createDirectories(file.getParent());
+		writeAtomically(file, status.getCode());
+	}
+
+	@Override
+	public SharedStatus lookup(String ticketId) throws IOException {
+		Path file = statusFile(ticketId);
+		try {
+			long publishedAt = Files.getLastModifiedTime(file).toMillis();
+			String code = new String(Files.readAllBytes(file), UTF_8);
+			TicketStatus status = ConnectorAttributeUtils.fromWsCode(code);
+			return status == null ? null : new SharedStatus(status, publishedAt);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	private Path statusFile(String ticketId) {
+		String name = fileName(ticketId);
+		// spread tickets over subdirectories, huge flat directories are slow on network shares
+		String prefix = String.format("%02x", ticketId.hashCode() & 0xff);
+		return statusesDirectory.resolve(prefix).resolve(name);
+	}
+
+	private static String fileName(String id) {
+		return id.replaceAll("[^A-Za-z0-9_.-]", "_");
+	}
+
+	private static void writeAtomically(Path file, String content) throws IOException {
+		Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, content.getBytes(UTF_8));
+			Files.move(temp, file, ATOMIC_MOVE, REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+}
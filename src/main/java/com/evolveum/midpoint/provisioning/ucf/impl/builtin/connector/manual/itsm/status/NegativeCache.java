@@ -0,0 +1,67 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers tickets whose status query failed, e.g. ticket deleted in Itsm or a malformed
+ * incident number. Such ticket is not queried again before its re-check time, the interval
+ * doubles with each failure up to the maximal one. Successful query forgets the ticket.
+ */
+public class NegativeCache {
+
+	private static final int MAX_TICKETS = 100_000;
+
+	private final long initialIntervalMillis;
+	private final long maxIntervalMillis;
+
+	private final Map<String, FailedTicket> failures = new LinkedHashMap<String, FailedTicket>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FailedTicket> eldest) {
+			return size() > MAX_TICKETS;
+		}
+	};
+
+	public NegativeCache(long initialIntervalMillis, long maxIntervalMillis) {
+		this.initialIntervalMillis = initialIntervalMillis;
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+	/**
+	 * @return time of the next allowed query or null if the ticket may be queried now
+	 */
+	public synchronized Long suppressedUntil(String ticketId) {
+		FailedTicket failed = failures.get(ticketId);
+		if(failed == null || failed.recheckAt <= System.currentTimeMillis()) {
+			return null;
+		}
+		return failed.recheckAt;
+	}
+
+	public synchronized void failed(String ticketId) {
+		FailedTicket failed = failures.get(ticketId);
+		if(failed != null && failed.recheckAt > System.currentTimeMillis()) {
+			// query sent before the previous failure was recorded, counts as the same failure
+			return;
+		}
+		if(failed == null) {
+			failed = new FailedTicket();
+			failed.interval = initialIntervalMillis;
+			failures.put(ticketId, failed);
+		} else {
+			failed.interval = Math.min(maxIntervalMillis, failed.interval * 2);
+		}
+		failed.recheckAt = System.currentTimeMillis() + failed.interval;
+	}
+
+	public synchronized void succeeded(String ticketId) {
+		failures.remove(ticketId);
+	}
+
+	private static final class FailedTicket {
+		private long interval;
+		private long recheckAt;
+	}
+}
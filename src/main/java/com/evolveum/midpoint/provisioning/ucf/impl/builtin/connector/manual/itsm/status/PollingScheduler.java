@@ -0,0 +1,75 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+
+/**
+ * Decides when it is worth asking the service for the status of a ticket again.
+ *
+ * A ticket whose status has just changed is polled again after the minimal interval. Every poll
+ * that finds the status unchanged doubles the interval up to the maximal one, so tickets that
+ * sit in the same status for long are polled rarely. Final statuses are never polled again.
+ * Until the next poll time the last known status is used.
+ */
+public class PollingScheduler {
+
+	private static final int MAX_TICKETS = 100_000;
+
+	private final long minIntervalMillis;
+	private final long maxIntervalMillis;
+
+	// least recently polled tickets are forgotten first
+	private final Map<String, TicketSchedule> schedules = new LinkedHashMap<String, TicketSchedule>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, TicketSchedule> eldest) {
+			return size() > MAX_TICKETS;
+		}
+	};
+
+	public PollingScheduler(long minIntervalMillis, long maxIntervalMillis) {
+		this.minIntervalMillis = minIntervalMillis;
+		this.maxIntervalMillis = maxIntervalMillis;
+	}
+
+	/**
+	 * @return last known status if the ticket is not due for polling yet, null otherwise
+	 */
+	public synchronized TicketStatus statusUntilNextPoll(String ticketId) {
+		TicketSchedule schedule = schedules.get(ticketId);
+		if(schedule == null || schedule.nextPollAt <= System.currentTimeMillis()) {
+			return null;
+		}
+		return schedule.status;
+	}
+
+	/**
+	 * Records polled status and plans the next poll.
+	 */
+	public synchronized void polled(String ticketId, TicketStatus status) {
+		long now = System.currentTimeMillis();
+		TicketSchedule schedule = schedules.get(ticketId);
+		if(schedule == null || schedule.status != status) {
+			schedule = new TicketSchedule(status, minIntervalMillis);
+			schedules.put(ticketId, schedule);
+		} else {
+			schedule.interval = Math.min(maxIntervalMillis, schedule.interval * 2);
+		}
+
+		schedule.nextPollAt = status.isFinal() ? Long.MAX_VALUE : now + schedule.interval;
+	}
+
+	private static final class TicketSchedule {
+		private final TicketStatus status;
+		private long interval;
+		private long nextPollAt;
+
+		private TicketSchedule(TicketStatus status, long interval) {
+			this.status = status;
+			this.interval = interval;
+		}
+	}
+}
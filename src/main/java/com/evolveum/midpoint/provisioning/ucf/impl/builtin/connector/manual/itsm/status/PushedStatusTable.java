@@ -0,0 +1,64 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+
+/**
+ * Ticket statuses pushed by the Itsm system. A pushed status is trusted for maxAge,
+ * final statuses for as long as they are kept. Least recently updated tickets are forgotten first.
+ */
+public class PushedStatusTable {
+
+	private static final int MAX_TICKETS = 100_000;
+
+	private final long maxAgeMillis;
+
+	private final Map<String, PushedStatus> statuses = new LinkedHashMap<String, PushedStatus>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PushedStatus> eldest) {
+			return size() > MAX_TICKETS;
+		}
+	};
+
+	public PushedStatusTable(long maxAgeMillis) {
+		this.maxAgeMillis = maxAgeMillis;
+	}
+
+	public synchronized void pushed(String ticketId, TicketStatus status) {
+		// reinsert, so the map keeps the push order
+		statuses.remove(ticketId);
+		statuses.put(ticketId, new PushedStatus(status, System.currentTimeMillis()));
+	}
+
+	/**
+	 * @return recently pushed status or null if there was no recent push for the ticket
+	 */
+	public synchronized TicketStatus recentStatus(String ticketId) {
+		PushedStatus pushed = statuses.get(ticketId);
+		if(pushed == null) {
+			return null;
+		}
+		if( ! pushed.status.isFinal() && pushed.receivedAt + maxAgeMillis < System.currentTimeMillis()) {
+			return null;
+		}
+		return pushed.status;
+	}
+
+	public synchronized int size() {
+		return statuses.size();
+	}
+
+	private static final class PushedStatus {
+		private final TicketStatus status;
+		private final long receivedAt;
+
+		private PushedStatus(TicketStatus status, long receivedAt) {
+			this.status = status;
+			this.receivedAt = receivedAt;
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import java.io.IOException;
+import java.util.Set;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+
+/**
+ * Storage shared by connector instances on all cluster nodes. Keeps the node membership
+ * and the last status polled by any node.
+ */
+public interface SharedStatusStore {
+
+	/**
+	 * Marks the node as alive.
+	 */
+	void heartbeat(String nodeId) throws IOException;
+
+	/**
+	 * @return nodes with heartbeat not older than maxAge
+	 */
+	Set<String> liveNodes(long maxAgeMillis) throws IOException;
+
+	void publish(String ticketId, TicketStatus status) throws IOException;
+
+	/**
+	 * @return last published status or null if there is none
+	 */
+	SharedStatus lookup(String ticketId) throws IOException;
+
+	public static final class SharedStatus {
+		private final TicketStatus status;
+		private final long publishedAt;
+
+		public SharedStatus(TicketStatus status, long publishedAt) {
+			this.status = status;
+			this.publishedAt = publishedAt;
+		}
+
+		public TicketStatus getStatus() {
+			return status;
+		}
+
+		public long getPublishedAt() {
+			return publishedAt;
+		}
+	}
+}
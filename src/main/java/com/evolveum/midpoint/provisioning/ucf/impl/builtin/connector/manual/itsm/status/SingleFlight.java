@@ -0,0 +1,66 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+
+/**
+ * Concurrent loads of the same key are executed only once. The first caller loads the value,
+ * callers coming while the load is in progress wait for it and get the same value or exception.
+ *
+ * Nothing is cached, a caller coming after the load finished starts a new one.
+ */
+public class SingleFlight<K, V> {
+
+	@FunctionalInterface
+	public interface Loader<V> {
+		V load() throws CommunicationException;
+	}
+
+	private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+	public V execute(K key, Loader<V> loader) throws CommunicationException {
+		CompletableFuture<V> own = new CompletableFuture<>();
+		CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+		if(running != null) {
+			return await(running);
+		}
+
+		try {
+			V value = loader.load();
+			own.complete(value);
+			return value;
+		} catch (Throwable t) {
+			own.completeExceptionally(t);
+			throw t;
+		} finally {
+			inFlight.remove(key, own);
+		}
+	}
+
+	public int getInFlightCount() {
+		return inFlight.size();
+	}
+
+	private V await(CompletableFuture<V> running) throws CommunicationException {
+		try {
+			return running.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof CommunicationException) {
+				throw (CommunicationException) cause;
+			} else if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CommunicationException("Interrupted while waiting for concurrent Itsm request", e);
+		}
+	}
+}
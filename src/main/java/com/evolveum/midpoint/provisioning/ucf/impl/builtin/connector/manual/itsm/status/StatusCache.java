@@ -0,0 +1,93 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+
+/**
+ * Bounded cache of ticket statuses, least recently used tickets are evicted first.
+ *
+ * Final statuses (resolved, closed, cancelled) do not change any more, they stay cached
+ * until evicted. Other statuses expire after ttl.
+ */
+public class StatusCache {
+
+	private final long ttlMillis;
+
+	private final Map<String, CachedStatus> statuses;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public StatusCache(int maxSize, long ttlMillis) {
+		this.ttlMillis = ttlMillis;
+		this.statuses = new LinkedHashMap<String, CachedStatus>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedStatus> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return cached status or null if the ticket is not cached or its status expired
+	 */
+	public TicketStatus get(String ticketId) {
+		CachedStatus cached;
+		synchronized (statuses) {
+			cached = statuses.get(ticketId);
+			if(cached != null && cached.expiresAt < System.currentTimeMillis()) {
+				statuses.remove(ticketId);
+				cached = null;
+			}
+		}
+
+		if(cached == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return cached.status;
+	}
+
+	public void put(String ticketId, TicketStatus status) {
+		long expiresAt = status.isFinal() ? Long.MAX_VALUE : System.currentTimeMillis() + ttlMillis;
+		synchronized (statuses) {
+			statuses.put(ticketId, new CachedStatus(status, expiresAt));
+		}
+	}
+
+	public void invalidate(String ticketId) {
+		synchronized (statuses) {
+			statuses.remove(ticketId);
+		}
+	}
+
+	public int size() {
+		synchronized (statuses) {
+			return statuses.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	private static final class CachedStatus {
+		private final TicketStatus status;
+		private final long expiresAt;
+
+		private CachedStatus(TicketStatus status, long expiresAt) {
+			this.status = status;
+			this.expiresAt = expiresAt;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ConnectorAttributeUtils;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ItsmAttributes;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+import com.evolveum.midpoint.util.exception.ConfigurationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * Embedded http listener accepting ticket status change notifications from the Itsm system.
+ *
+ * Notification is a form POST to {@link #PATH} with Incident_Number and IncidentStatus
+ * parameters, the status is the Itsm status code. Requests must use basic authentication
+ * with the push credentials, which are separate from the web service account. Basic authentication
+ * sends the password readable, so the listener should use https unless it is bound to a trusted
+ * interface only.
+ */
+public class StatusPushListener implements Closeable {
+
+	private static final Trace LOGGER = TraceManager.getTrace(StatusPushListener.class);
+
+	public static final String PATH = "/itsm/status";
+
+	private static final int THREADS = 2;
+	private static final int MAX_BODY_LENGTH = 8 * 1024;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final byte[] expectedAuthorization;
+	private final BiConsumer<String, TicketStatus> consumer;
+
+	private StatusPushListener(HttpServer server, String username, String password,
+			BiConsumer<String, TicketStatus> consumer) {
+		this.server = server;
+		this.consumer = consumer;
+		this.expectedAuthorization = ("Basic " + Base64.getEncoder()
+				.encodeToString((username + ":" + password).getBytes(UTF_8))).getBytes(UTF_8);
+		this.executor = Executors.newFixedThreadPool(THREADS, runnable -> {
+			Thread thread = new Thread(runnable, "itsm-status-push");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts listening on the address, port 0 picks a free port.
+	 *
+	 * @param sslContext enables https, null means plain http
+	 * @throws ConfigurationException if the address host can't be resolved
+	 */
+	public static StatusPushListener start(InetSocketAddress address, SSLContext sslContext,
+			String username, String password, BiConsumer<String, TicketStatus> consumer)
+					throws IOException, ConfigurationException {
+		if(address.isUnresolved()) {
+			throw new ConfigurationException("Itsm status push listener address " + address.getHostString()
+					+ " can't be resolved");
+		}
+		HttpServer server;
+		if(sslContext != null) {
+			HttpsServer httpsServer = HttpsServer.create(address, 0);
+			httpsServer.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+			server = httpsServer;
+		} else {
+			server = HttpServer.create(address, 0);
+		}
+		StatusPushListener listener = new StatusPushListener(server, username, password, consumer);
+		server.createContext(PATH, listener::handle);
+		server.setExecutor(listener.executor);
+		server.start();
+		if(sslContext == null && ! address.getAddress().isLoopbackAddress()) {
+			LOGGER.warn("Itsm status push listener started on {} without https, push credentials are sent readable", 
+					listener.getAddress());
+		} else {
+			LOGGER.debug("Itsm status push listener started on {}", listener.getAddress());
+		}
+		return listener;
+	}
+
+	/**
+	 * Loads the listener key and certificate, keystore type is JKS for .jks files, PKCS12 otherwise.
+	 */
+	public static SSLContext sslContext(Path keyStoreFile, String password) throws IOException {
+		try {
+			KeyStore keyStore = KeyStore.getInstance(
+					keyStoreFile.getFileName().toString().endsWith(".jks") ? "JKS" : "PKCS12");
+			try (InputStream in = Files.newInputStream(keyStoreFile)) {
+				keyStore.load(in, password.toCharArray());
+			}
+			KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+			keyManagers.init(keyStore, password.toCharArray());
+			SSLContext sslContext = SSLContext.getInstance("TLS");
+			sslContext.init(keyManagers.getKeyManagers(), null, null);
+			return sslContext;
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Couldn't load push listener key from " + keyStoreFile + ": " + e.getMessage(), e);
+		}
+	}
+
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			if( ! "POST".equals(exchange.getRequestMethod())) {
+				respond(exchange, HttpURLConnection.HTTP_BAD_METHOD);
+				return;
+			}
+			if( ! authorized(exchange)) {
+				exchange.getResponseHeaders().add("WWW-Authenticate", "Basic realm=\"itsm\"");
+				respond(exchange, HttpURLConnection.HTTP_UNAUTHORIZED);
+				return;
+			}
+
+			Map<String, String> form = parseForm(readBody(exchange.getRequestBody()));
+			String incidentNumber = form.get(ItsmAttributes.INCIDENT_NUMBER.getName());
+			String statusCode = form.get(ItsmAttributes.INCIDENT_STATUS.getName());
+			TicketStatus status = statusCode != null ? ConnectorAttributeUtils.fromWsCode(statusCode) : null;
+			if(incidentNumber == null || incidentNumber.isEmpty() || status == null) {
+				LOGGER.warn("Ignoring invalid status push, incident {} status {}", incidentNumber, statusCode);
+				respond(exchange, HttpURLConnection.HTTP_BAD_REQUEST);
+				return;
+			}
+
+			LOGGER.trace("Status of {} pushed: {}", incidentNumber, status);
+			consumer.accept(incidentNumber, status);
+			respond(exchange, HttpURLConnection.HTTP_NO_CONTENT);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Error processing status push", e);
+			respond(exchange, HttpURLConnection.HTTP_INTERNAL_ERROR);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private boolean authorized(HttpExchange exchange) {
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		// constant time comparison, does not leak the password by timing
+		return authorization != null && MessageDigest.isEqual(expectedAuthorization, authorization.getBytes(UTF_8));
+	}
+
+	private static void respond(HttpExchange exchange, int code) throws IOException {
+		exchange.sendResponseHeaders(code, -1);
+	}
+
+	private static String readBody(InputStream body) throws IOException {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		byte[] chunk = new byte[1024];
+		int read;
+		while((read = body.read(chunk)) != -1) {
+			content.write(chunk, 0, read);
+			if(content.size() > MAX_BODY_LENGTH) {
+				throw new IOException("Status push body is too long");
+			}
+		}
+		return new String(content.toByteArray(), UTF_8);
+	}
+
+	private static Map<String, String> parseForm(String body) throws IOException {
+		Map<String, String> form = new HashMap<>();
+		for(String pair : body.split("&")) {
+			int separator = pair.indexOf('=');
+			if(separator > 0) {
+				form.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+						URLDecoder.decode(pair.substring(separator + 1), "UTF-8").trim());
+			}
+		}
+		return form;
+	}
+}
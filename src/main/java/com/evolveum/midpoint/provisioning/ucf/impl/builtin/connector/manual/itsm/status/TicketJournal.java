@@ -0,0 +1,361 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.ConnectorAttributeUtils;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Append-only journal of created tickets and their statuses, kept in a memory-mapped file,
+ * so the known state survives connector and midPoint restarts.
+ *
+ * Each record is [int length][byte type][long time][incident number][value], strings are
+ * stored as [short length][utf-8 bytes]. The length is written last and followed by zero,
+ * a record torn by a crash reads as the end of the journal. Records written shortly before
+ * an operating system crash may be lost, such tickets are simply polled again.
+ *
+ * The journal is compacted to one ticket and one status record per incident when it
+ * holds too many outdated records. Tickets in final status are dropped after retention time.
+ */
+public class TicketJournal implements Closeable {
+
+	private static final Trace LOGGER = TraceManager.getTrace(TicketJournal.class);
+
+	private static final int INITIAL_CAPACITY = 1 << 20;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE;
+	private static final int COMPACTION_MIN_RECORDS = 10_000;
+	private static final long FINAL_STATUS_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(180);
+
+	private static final byte RECORD_TICKET = 1;
+	private static final byte RECORD_STATUS = 2;
+
+	// closing any channel of a file drops the process file lock, so the same journal
+	// must not even be opened twice in one JVM
+	private static final Set<Path> OPEN_JOURNALS = ConcurrentHashMap.newKeySet();
+
+	private final Path file;
+	private FileChannel channel;
+	private FileLock lock;
+	private MappedByteBuffer buffer;
+
+	private int records = 0;
+	private final Map<String, JournalEntry> entries = new HashMap<>();
+
+	private TicketJournal(Path file) {
+		this.file = file.toAbsolutePath().normalize();
+	}
+
+	/**
+	 * Opens the journal and indexes its content.
+	 *
+	 * @throws IOException if the journal can't be read or is used by another connector instance
+	 */
+	public static TicketJournal open(Path file) throws IOException {
+		TicketJournal journal = new TicketJournal(file);
+		try {
+			journal.load();
+			if(journal.needsCompaction()) {
+				journal.compact();
+			}
+		} catch (IOException | RuntimeException e) {
+			journal.close();
+			throw e;
+		}
+		return journal;
+	}
+
+	public synchronized void ticketCreated(String incidentNumber, String operation) {
+		long now = System.currentTimeMillis();
+		if(append(RECORD_TICKET, now, incidentNumber, operation)) {
+			apply(RECORD_TICKET, now, incidentNumber, operation);
+		}
+	}
+
+	/**
+	 * Records the status if it differs from the last recorded one.
+	 */
+	public synchronized void statusSeen(String incidentNumber, TicketStatus status) {
+		JournalEntry entry = entries.get(incidentNumber);
+		if(entry != null && entry.status == status) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if(append(RECORD_STATUS, now, incidentNumber, status.getCode())) {
+			apply(RECORD_STATUS, now, incidentNumber, status.getCode());
+		}
+	}
+
+	public synchronized JournalEntry get(String incidentNumber) {
+		JournalEntry entry = entries.get(incidentNumber);
+		return entry != null ? entry.copy() : null;
+	}
+
+	/**
+	 * @return last recorded status or null if not known
+	 */
+	public synchronized TicketStatus lastStatus(String incidentNumber) {
+		JournalEntry entry = entries.get(incidentNumber);
+		return entry != null ? entry.status : null;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			if(buffer != null) {
+				buffer.force();
+			}
+			if(channel != null) {
+				// releases the lock too
+				channel.close();
+			}
+		} catch (IOException e) {
+			LOGGER.error("Error closing ticket journal {}, ignoring as non fatal.", file, e);
+		} finally {
+			if(channel != null) {
+				OPEN_JOURNALS.remove(file);
+			}
+			buffer = null;
+			channel = null;
+			lock = null;
+		}
+	}
+
+	/**
+	 * Rewrites the journal with the latest state of each ticket only.
+	 */
+	public synchronized void compact() throws IOException {
+		long start = System.currentTimeMillis();
+		long oldestFinal = start - FINAL_STATUS_RETENTION_MILLIS;
+		entries.values().removeIf(entry -> entry.status != null && entry.status.isFinal() && entry.statusAt < oldestFinal);
+
+		Path compacted = file.resolveSibling(file.getFileName() + ".compact");
+		try (FileChannel out = FileChannel.open(compacted, CREATE, WRITE, TRUNCATE_EXISTING)) {
+			ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+			for(Map.Entry<String, JournalEntry> mapEntry : entries.entrySet()) {
+				JournalEntry entry = mapEntry.getValue();
+				if(entry.operation != null) {
+					block = write(out, block, RECORD_TICKET, entry.createdAt, mapEntry.getKey(), entry.operation);
+				}
+				if(entry.status != null) {
+					block = write(out, block, RECORD_STATUS, entry.statusAt, mapEntry.getKey(), entry.status.getCode());
+				}
+			}
+			block.flip();
+			while(block.hasRemaining()) {
+				out.write(block);
+			}
+			out.force(true);
+		}
+
+		int oldRecords = records;
+		close();
+		Files.move(compacted, file, ATOMIC_MOVE, REPLACE_EXISTING);
+		entries.clear();
+		records = 0;
+		load();
+		LOGGER.debug("Ticket journal {} compacted from {} to {} records in {} ms",
+				file, oldRecords, records, System.currentTimeMillis() - start);
+	}
+
+	private void load() throws IOException {
+		if( ! OPEN_JOURNALS.add(file)) {
+			throw new IOException("Ticket journal " + file + " is used by another connector instance");
+		}
+		try {
+			channel = FileChannel.open(file, CREATE, READ, WRITE);
+			lock = channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		} catch (IOException e) {
+			OPEN_JOURNALS.remove(file);
+			throw e;
+		}
+		if(lock == null) {
+			channel.close();
+			channel = null;
+			OPEN_JOURNALS.remove(file);
+			throw new IOException("Ticket journal " + file + " is used by another process");
+		}
+
+		buffer = channel.map(MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, channel.size()));
+		while(buffer.remaining() >= 4) {
+			int start = buffer.position();
+			int length = buffer.getInt();
+			if(length <= 0 || length > buffer.remaining()) {
+				buffer.position(start);
+				break;
+			}
+			byte type = buffer.get();
+			long time = buffer.getLong();
+			String incidentNumber = readString(buffer);
+			String value = readString(buffer);
+			apply(type, time, incidentNumber, value);
+			records++;
+		}
+		LOGGER.debug("Ticket journal {} loaded, {} tickets in {} records", file, entries.size(), records);
+	}
+
+	private boolean append(byte type, long time, String incidentNumber, String value) {
+		if(buffer == null) {
+			return false;
+		}
+		byte[] id = incidentNumber.getBytes(UTF_8);
+		byte[] val = value != null ? value.getBytes(UTF_8) : new byte[0];
+		int length = 1 + 8 + 2 + id.length + 2 + val.length;
+
+		try {
+			if(needsCompaction()) {
+				compact();
+			}
+			// record and the zero terminator
+			ensureCapacity(4 + length + 4);
+		} catch (IOException e) {
+			LOGGER.error("Can't write to ticket journal {}, journal disabled.", file, e);
+			close();
+			return false;
+		}
+
+		int start = buffer.position();
+		buffer.position(start + 4);
+		buffer.put(type).putLong(time);
+		buffer.putShort((short) id.length).put(id);
+		buffer.putShort((short) val.length).put(val);
+		int end = buffer.position();
+		buffer.putInt(end, 0);
+		buffer.putInt(start, length);
+		records++;
+		return true;
+	}
+
+	private void ensureCapacity(int needed) throws IOException {
+		if(buffer.remaining() >= needed) {
+			return;
+		}
+		int position = buffer.position();
+		long capacity = Math.min(MAX_CAPACITY, Math.max(2L * buffer.capacity(), (long) position + needed));
+		if(capacity - position < needed) {
+			throw new IOException("Ticket journal " + file + " is full");
+		}
+		buffer.force();
+		// the old mapping is released by garbage collector
+		buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+		buffer.position(position);
+	}
+
+	private boolean needsCompaction() {
+		return records > COMPACTION_MIN_RECORDS && records > 3 * entries.size();
+	}
+
+	private void apply(byte type, long time, String incidentNumber, String value) {
+		JournalEntry entry = entries.get(incidentNumber);
+		if(entry == null) {
+			entry = new JournalEntry();
+			entry.createdAt = time;
+			entries.put(incidentNumber, entry);
+		}
+
+		switch(type) {
+			case RECORD_TICKET:
+				entry.operation = value;
+				entry.createdAt = time;
+				break;
+			case RECORD_STATUS:
+				entry.status = ConnectorAttributeUtils.fromWsCode(value);
+				entry.statusAt = time;
+				break;
+			default:
+				LOGGER.warn("Unknown record type {} in ticket journal {}, ignoring", type, file);
+		}
+	}
+
+	private static String readString(ByteBuffer source) {
+		byte[] bytes = new byte[source.getShort()];
+		source.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static ByteBuffer write(FileChannel out, ByteBuffer block, byte type, long time,
+			String incidentNumber, String value) throws IOException {
+		byte[] id = incidentNumber.getBytes(UTF_8);
+		byte[] val = value.getBytes(UTF_8);
+		int length = 1 + 8 + 2 + id.length + 2 + val.length;
+
+		if(block.remaining() < 4 + length) {
+			block.flip();
+			while(block.hasRemaining()) {
+				out.write(block);
+			}
+			block.clear();
+			if(block.remaining() < 4 + length) {
+				block = ByteBuffer.allocate(4 + length);
+			}
+		}
+		block.putInt(length).put(type).putLong(time);
+		block.putShort((short) id.length).put(id);
+		block.putShort((short) val.length).put(val);
+		return block;
+	}
+
+	/**
+	 * Journaled state of one ticket.
+	 */
+	public static class JournalEntry {
+		private String operation;
+		private long createdAt;
+		private TicketStatus status;
+		private long statusAt;
+
+		public String getOperation() {
+			return operation;
+		}
+
+		public long getCreatedAt() {
+			return createdAt;
+		}
+
+		public TicketStatus getStatus() {
+			return status;
+		}
+
+		public long getStatusAt() {
+			return statusAt;
+		}
+
+		private JournalEntry copy() {
+			JournalEntry copy = new JournalEntry();
+			copy.operation = operation;
+			copy.createdAt = createdAt;
+			copy.status = status;
+			copy.statusAt = statusAt;
+			return copy;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ticket;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Remembers recently created tickets by fingerprint of their content, so the same request
+ * repeated within the window, e.g. on retry or re-execution in midPoint, gets the existing
+ * ticket instead of a duplicate one.
+ *
+ * Identical requests sent concurrently are not detected, both of them create a ticket.
+ */
+public class TicketFingerprints {
+
+	private static final int MAX_TICKETS = 10_000;
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final long windowMillis;
+
+	private final Map<String, CreatedTicket> tickets = new LinkedHashMap<String, CreatedTicket>() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CreatedTicket> eldest) {
+			return size() > MAX_TICKETS;
+		}
+	};
+
+	public TicketFingerprints(long windowMillis) {
+		this.windowMillis = windowMillis;
+	}
+
+	/**
+	 * Fingerprint of the final ticket attributes, operation and account identifier.
+	 */
+	public static String fingerprint(Map<String, String> attributes, String operation, String identifier) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// every java platform supports SHA-256
+			throw new IllegalStateException(e);
+		}
+		update(digest, operation);
+		update(digest, identifier);
+		// independent of the map iteration order
+		for(Map.Entry<String, String> attribute : new TreeMap<>(attributes).entrySet()) {
+			update(digest, attribute.getKey());
+			update(digest, attribute.getValue());
+		}
+
+		byte[] hash = digest.digest();
+		char[] hex = new char[2 * hash.length];
+		for(int i = 0; i < hash.length; i++) {
+			hex[2 * i] = HEX[(hash[i] >> 4) & 0xf];
+			hex[2 * i + 1] = HEX[hash[i] & 0xf];
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * @return incident number of the same ticket created within the window, null if there is none
+	 */
+	public synchronized String createdTicket(String fingerprint) {
+		CreatedTicket created = tickets.get(fingerprint);
+		if(created == null) {
+			return null;
+		}
+		if(created.createdAt < System.currentTimeMillis() - windowMillis) {
+			tickets.remove(fingerprint);
+			return null;
+		}
+		return created.incidentNumber;
+	}
+
+	public synchronized void ticketCreated(String fingerprint, String incidentNumber) {
+		// re-inserted, so the map stays ordered by creation time
+		tickets.remove(fingerprint);
+		tickets.put(fingerprint, new CreatedTicket(incidentNumber, System.currentTimeMillis()));
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		// length prefix keeps adjacent values from running into each other
+		if(value == null) {
+			digest.update((byte) 0);
+			return;
+		}
+		byte[] bytes = value.getBytes(UTF_8);
+		digest.update((byte) 1);
+		digest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+				(byte) (bytes.length >>> 8), (byte) bytes.length});
+		digest.update(bytes);
+	}
+
+	private static final class CreatedTicket {
+		private final String incidentNumber;
+		private final long createdAt;
+
+		private CreatedTicket(String incidentNumber, long createdAt) {
+			this.incidentNumber = incidentNumber;
+			this.createdAt = createdAt;
+		}
+	}
+}
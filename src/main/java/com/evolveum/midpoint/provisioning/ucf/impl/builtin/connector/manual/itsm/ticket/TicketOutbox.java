@@ -0,0 +1,487 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ticket;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Durable queue of rendered tickets waiting to be created in Itsm.
+ *
+ * Queued ticket gets a local reference immediately and is sent later by a background thread,
+ * one ticket per send interval, in the order of queueing. A ticket that can't be sent because
+ * of a communication failure stays first in the queue and is sent again in the next interval.
+ * After several failures in a row it goes to the end of the queue, so it does not hold up the
+ * tickets behind it, and it is given up as failed if it is not sent within the maximum queue time.
+ * A ticket that can't be read is moved aside as failed.
+ *
+ * Tickets queued with a merge key are kept out of the sending order for the merge window and take
+ * changes queued meanwhile with the same key, then they join the queue, so the changes of one account
+ * arriving one after another end up in one ticket.
+ *
+ * Each ticket is a file in the outbox directory: &lt;reference&gt;.ticket while queued, replaced
+ * by &lt;reference&gt;.sent holding the incident number or by &lt;reference&gt;.failed if Itsm
+ * rejected it. Sent and failed files are kept for the retention time, so the local reference
+ * can be resolved to the incident number after restarts.
+ *
+ * The directory is locked while the outbox is open, connector instances sharing it
+ * would send the same tickets.
+ */
+public class TicketOutbox implements Closeable {
+
+	private static final Trace LOGGER = TraceManager.getTrace(TicketOutbox.class);
+
+	private static final String LOCAL_REFERENCE_PREFIX = "OUTBOX-";
+	private static final String QUEUED_SUFFIX = ".ticket";
+	private static final String SENT_SUFFIX = ".sent";
+	private static final String FAILED_SUFFIX = ".failed";
+	private static final String OPERATION_KEY = "@operation";
+	private static final String MERGE_KEY = "@mergeKey";
+	private static final String CHANGES_KEY = "@changes";
+	private static final String INCIDENT_NUMBER_KEY = "incidentNumber";
+	private static final long DELIVERY_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+	private static final long MAX_QUEUED_MILLIS = TimeUnit.DAYS.toMillis(7);
+	private static final int MAX_ATTEMPTS_IN_PLACE = 3;
+	private static final String LOCK_FILE = "outbox.lock";
+
+	// closing any channel of a file drops the process file lock, so the same outbox
+	// must not even be opened twice in one JVM
+	private static final Set<Path> OPEN_OUTBOXES = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Creates the ticket in Itsm.
+	 */
+	@FunctionalInterface
+	public interface Sender {
+		/**
+		 * @return incident number, null if Itsm rejected the ticket and sending it again makes no sense
+		 * @throws CommunicationException if the ticket should be sent again later
+		 */
+		String send(Map<String, String> attributes, String operation) throws CommunicationException;
+	}
+
+	/**
+	 * Renders attributes of a mergeable ticket.
+	 */
+	@FunctionalInterface
+	public interface Renderer {
+		Map<String, String> render(String changes);
+	}
+
+	private final Path directory;
+	private final Sender sender;
+
+	// tickets still taking changes by merge key, not in the queue yet, guarded by the outbox lock
+	private final Map<String, Mergeable> mergeable = new HashMap<>();
+
+	// in the order of sending, tickets are removed by the sending thread only
+	private final Queue<String> queued = new ConcurrentLinkedQueue<>();
+	// queued, sent and rejected tickets by local reference
+	private final Map<String, Delivery> deliveries = new ConcurrentHashMap<>();
+
+	private boolean registered = false;
+	private FileChannel lockChannel;
+	private ScheduledExecutorService sendingThread;
+
+	// consecutive failures of the first queued ticket, used by the sending thread only
+	private String failingReference;
+	private int failedAttempts = 0;
+
+	private TicketOutbox(Path directory, Sender sender) {
+		this.directory = directory;
+		this.sender = sender;
+	}
+
+	/**
+	 * Locks the directory, loads tickets queued before and starts sending them.
+	 *
+	 * @throws IOException if the outbox can't be read or is used by another connector instance
+	 */
+	public static TicketOutbox open(Path directory, Sender sender, long sendIntervalMillis) throws IOException {
+		TicketOutbox outbox = new TicketOutbox(Files.createDirectories(directory).toAbsolutePath().normalize(), sender);
+		try {
+			outbox.lock();
+			outbox.load();
+		} catch (IOException | RuntimeException e) {
+			outbox.unlock();
+			throw e;
+		}
+		outbox.sendingThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "itsm-outbox-" + directory.getFileName());
+			thread.setDaemon(true);
+			return thread;
+		});
+		outbox.sendingThread.scheduleWithFixedDelay(
+				outbox::sendNext, sendIntervalMillis, sendIntervalMillis, TimeUnit.MILLISECONDS);
+		return outbox;
+	}
+
+	public static boolean isLocalReference(String ticketId) {
+		return ticketId != null && ticketId.startsWith(LOCAL_REFERENCE_PREFIX);
+	}
+
+	/**
+	 * Stores the ticket durably.
+	 *
+	 * @return local reference of the ticket
+	 */
+	public String enqueue(Map<String, String> attributes, String operation) throws IOException {
+		String reference = newReference();
+		Properties ticket = new Properties();
+		ticket.putAll(attributes);
+		if(operation != null) {
+			ticket.setProperty(OPERATION_KEY, operation);
+		}
+		store(reference + QUEUED_SUFFIX, ticket);
+		deliveries.put(reference, Delivery.QUEUED);
+		queued.offer(reference);
+		return reference;
+	}
+
+	/**
+	 * Adds the changes to the queued ticket with the same merge key or queues a new ticket.
+	 *
+	 * @return local reference of the ticket holding the changes
+	 */
+	public synchronized String enqueue(String mergeKey, String changes, String operation,
+			long mergeWindowMillis, Renderer renderer) throws IOException {
+
+		Mergeable pending = mergeable.get(mergeKey);
+		if(pending != null) {
+			try {
+				Properties ticket = load(pending.reference + QUEUED_SUFFIX);
+				String merged = ticket.getProperty(CHANGES_KEY) + "\n" + changes;
+				store(pending.reference + QUEUED_SUFFIX, mergeableTicket(mergeKey, merged, operation, renderer));
+				LOGGER.trace("Changes of {} merged into outbox ticket {}", mergeKey, pending.reference);
+				return pending.reference;
+			} catch (IOException e) {
+				LOGGER.warn("Couldn't merge changes of {} into outbox ticket {}, queueing new ticket: {}",
+						mergeKey, pending.reference, e.getMessage());
+				mergeable.remove(mergeKey);
+				queued.offer(pending.reference);
+			}
+		}
+
+		Properties ticket = mergeableTicket(mergeKey, changes, operation, renderer);
+		String reference = newReference();
+		store(reference + QUEUED_SUFFIX, ticket);
+		mergeable.put(mergeKey, new Mergeable(reference, System.currentTimeMillis() + mergeWindowMillis));
+		deliveries.put(reference, Delivery.QUEUED);
+		return reference;
+	}
+
+	private static Properties mergeableTicket(String mergeKey, String changes, String operation, Renderer renderer) {
+		Properties ticket = new Properties();
+		ticket.putAll(renderer.render(changes));
+		if(operation != null) {
+			ticket.setProperty(OPERATION_KEY, operation);
+		}
+		ticket.setProperty(MERGE_KEY, mergeKey);
+		ticket.setProperty(CHANGES_KEY, changes);
+		return ticket;
+	}
+
+	/**
+	 * @return delivery state of the ticket or null if the reference is not known
+	 */
+	public Delivery delivery(String reference) {
+		return deliveries.get(reference);
+	}
+
+	public int getQueuedCount() {
+		return queued.size();
+	}
+
+	private static String newReference() {
+		// references sort in the order of queueing
+		return String.format("%s%013d-%s", LOCAL_REFERENCE_PREFIX,
+				System.currentTimeMillis(), UUID.randomUUID().toString().substring(0, 8));
+	}
+
+	/**
+	 * Stops sending, queued tickets are sent after the outbox is opened again.
+	 */
+	@Override
+	public void close() {
+		if(sendingThread != null) {
+			sendingThread.shutdown();
+			try {
+				sendingThread.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			sendingThread = null;
+		}
+		unlock();
+	}
+
+	private void lock() throws IOException {
+		if( ! OPEN_OUTBOXES.add(directory)) {
+			throw new IOException("Ticket outbox " + directory + " is used by another connector instance");
+		}
+		registered = true;
+		FileLock lock;
+		try {
+			lockChannel = FileChannel.open(directory.resolve(LOCK_FILE), CREATE, WRITE);
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if(lock == null) {
+			throw new IOException("Ticket outbox " + directory + " is used by another process");
+		}
+	}
+
+	private void unlock() {
+		if(lockChannel != null) {
+			try {
+				// releases the lock too
+				lockChannel.close();
+			} catch (IOException e) {
+				LOGGER.error("Error closing ticket outbox {}, ignoring as non fatal.", directory, e);
+			}
+			lockChannel = null;
+		}
+		if(registered) {
+			OPEN_OUTBOXES.remove(directory);
+			registered = false;
+		}
+	}
+
+	private void sendNext() {
+		queueMerged();
+		String reference = queued.peek();
+		if(reference == null) {
+			return;
+		}
+		Properties ticket;
+		try {
+			ticket = load(reference + QUEUED_SUFFIX);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.error("Can't read outbox ticket {}, moving it aside as failed.", reference, e);
+			moveAside(reference);
+			return;
+		}
+		ticket.remove(MERGE_KEY);
+		ticket.remove(CHANGES_KEY);
+		String operation = (String) ticket.remove(OPERATION_KEY);
+		Map<String, String> attributes = new HashMap<>();
+		for(String name : ticket.stringPropertyNames()) {
+			attributes.put(name, ticket.getProperty(name));
+		}
+
+		String incidentNumber;
+		try {
+			incidentNumber = sender.send(attributes, operation);
+		} catch (CommunicationException e) {
+			LOGGER.debug("Outbox ticket {} not sent, will try again: {}", reference, e.getMessage());
+			sendFailed(reference);
+			return;
+		} catch (RuntimeException e) {
+			LOGGER.error("Error sending outbox ticket {}, will try again.", reference, e);
+			sendFailed(reference);
+			return;
+		}
+
+		try {
+			Properties delivery = new Properties();
+			if(incidentNumber != null) {
+				delivery.setProperty(INCIDENT_NUMBER_KEY, incidentNumber);
+				store(reference + SENT_SUFFIX, delivery);
+				deliveries.put(reference, Delivery.sent(incidentNumber));
+				LOGGER.debug("Outbox ticket {} created as {}", reference, incidentNumber);
+			} else {
+				store(reference + FAILED_SUFFIX, delivery);
+				deliveries.put(reference, Delivery.FAILED);
+				LOGGER.warn("Outbox ticket {} was rejected by Itsm", reference);
+			}
+			Files.deleteIfExists(directory.resolve(reference + QUEUED_SUFFIX));
+		} catch (IOException e) {
+			// the ticket is created, sending it again after a restart is better than losing it
+			LOGGER.error("Couldn't record delivery of outbox ticket {}.", reference, e);
+			deliveries.put(reference, incidentNumber != null ? Delivery.sent(incidentNumber) : Delivery.FAILED);
+		}
+		queued.poll();
+	}
+
+	/**
+	 * Moves tickets whose merge window is over to the end of the queue, they take no more changes.
+	 */
+	private synchronized void queueMerged() {
+		if(mergeable.isEmpty()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		List<String> merged = new ArrayList<>();
+		mergeable.values().removeIf(pending -> {
+			if(pending.sendAfter > now) {
+				return false;
+			}
+			merged.add(pending.reference);
+			return true;
+		});
+		// in the order of queueing
+		Collections.sort(merged);
+		queued.addAll(merged);
+	}
+
+	private void sendFailed(String reference) {
+		if( ! reference.equals(failingReference)) {
+			failingReference = reference;
+			failedAttempts = 0;
+		}
+		failedAttempts++;
+		if(queuedAt(reference) + MAX_QUEUED_MILLIS < System.currentTimeMillis()) {
+			LOGGER.error("Outbox ticket {} was not sent within {} days, giving up.",
+					reference, TimeUnit.MILLISECONDS.toDays(MAX_QUEUED_MILLIS));
+			moveAside(reference);
+		} else if(failedAttempts >= MAX_ATTEMPTS_IN_PLACE) {
+			LOGGER.debug("Outbox ticket {} failed {} times, moving it to the end of the queue", reference, failedAttempts);
+			// added to the end before it is removed from the head, so it is never out of the queue
+			queued.offer(reference);
+			queued.poll();
+			failingReference = null;
+		}
+	}
+
+	/**
+	 * Keeps the ticket file for inspection as failed delivery.
+	 */
+	private void moveAside(String reference) {
+		deliveries.put(reference, Delivery.FAILED);
+		queued.poll();
+		try {
+			Files.move(directory.resolve(reference + QUEUED_SUFFIX), directory.resolve(reference + FAILED_SUFFIX),
+					REPLACE_EXISTING);
+		} catch (IOException e) {
+			// skipped until the outbox is opened again
+			LOGGER.error("Couldn't move outbox ticket {} aside.", reference, e);
+		}
+	}
+
+	private static long queuedAt(String reference) {
+		try {
+			return Long.parseLong(reference.substring(LOCAL_REFERENCE_PREFIX.length(), LOCAL_REFERENCE_PREFIX.length() + 13));
+		} catch (IndexOutOfBoundsException | NumberFormatException e) {
+			// not created by this outbox
+			return 0L;
+		}
+	}
+
+	private void load() throws IOException {
+		long oldestKept = System.currentTimeMillis() - DELIVERY_RETENTION_MILLIS;
+		List<String> loaded = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, LOCAL_REFERENCE_PREFIX + "*")) {
+			for(Path file : files) {
+				String name = file.getFileName().toString();
+				if(name.endsWith(QUEUED_SUFFIX)) {
+					loaded.add(name.substring(0, name.length() - QUEUED_SUFFIX.length()));
+				} else if(Files.getLastModifiedTime(file).toMillis() < oldestKept) {
+					Files.delete(file);
+				} else if(name.endsWith(SENT_SUFFIX)) {
+					String incidentNumber = load(name).getProperty(INCIDENT_NUMBER_KEY);
+					deliveries.put(name.substring(0, name.length() - SENT_SUFFIX.length()), Delivery.sent(incidentNumber));
+				} else if(name.endsWith(FAILED_SUFFIX)) {
+					deliveries.put(name.substring(0, name.length() - FAILED_SUFFIX.length()), Delivery.FAILED);
+				}
+			}
+		}
+		// sent but not yet removed from the queue before the restart
+		loaded.removeIf(deliveries::containsKey);
+		Collections.sort(loaded);
+		for(String reference : loaded) {
+			deliveries.put(reference, Delivery.QUEUED);
+		}
+		queued.addAll(loaded);
+		LOGGER.debug("Ticket outbox {} loaded, {} queued tickets", directory, queued.size());
+	}
+
+	private Properties load(String fileName) throws IOException {
+		Properties properties = new Properties();
+		try (Reader reader = Files.newBufferedReader(directory.resolve(fileName), UTF_8)) {
+			properties.load(reader);
+		}
+		return properties;
+	}
+
+	private void store(String fileName, Properties properties) throws IOException {
+		Path file = directory.resolve(fileName);
+		Path temporary = file.resolveSibling(fileName + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temporary, UTF_8)) {
+			properties.store(writer, null);
+		}
+		Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+	}
+
+	private static final class Mergeable {
+		private final String reference;
+		private final long sendAfter;
+
+		private Mergeable(String reference, long sendAfter) {
+			this.reference = reference;
+			this.sendAfter = sendAfter;
+		}
+	}
+
+	/**
+	 * Delivery state of a queued ticket.
+	 */
+	public static final class Delivery {
+
+		private static final Delivery QUEUED = new Delivery(false, null);
+		private static final Delivery FAILED = new Delivery(true, null);
+
+		private final boolean failed;
+		private final String incidentNumber;
+
+		private Delivery(boolean failed, String incidentNumber) {
+			this.failed = failed;
+			this.incidentNumber = incidentNumber;
+		}
+
+		private static Delivery sent(String incidentNumber) {
+			return new Delivery(false, incidentNumber);
+		}
+
+		public boolean isFailed() {
+			return failed;
+		}
+
+		/**
+		 * @return incident number, null while the ticket is queued or if it failed
+		 */
+		public String getIncidentNumber() {
+			return incidentNumber;
+		}
+	}
+}
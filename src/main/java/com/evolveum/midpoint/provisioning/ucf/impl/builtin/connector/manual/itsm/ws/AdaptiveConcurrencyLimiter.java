@@ -0,0 +1,118 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Limits the number of concurrent Itsm calls, the limit follows the service capacity (AIMD).
+ *
+ * Each call that succeeds with latency close to the best latency seen raises the limit
+ * by 1/limit, i.e. by one per round of calls. A failed call or a call much slower than the best one
+ * (the service is queueing) multiplies the limit by the backoff ratio.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+	private static final Trace LOGGER = TraceManager.getTrace(AdaptiveConcurrencyLimiter.class);
+
+	private static final double BACKOFF_RATIO = 0.9;
+	// latency above tolerance * best latency is considered overload
+	private static final double LATENCY_TOLERANCE = 2.0;
+	// lets the best latency follow lasting changes of the service, about 1% per call
+	private static final double BEST_LATENCY_DRIFT = 1.01;
+
+	private final int minLimit;
+	private final int maxLimit;
+
+	private double limit;
+	private int inFlight = 0;
+	private double bestLatencyNanos = Double.MAX_VALUE;
+
+	public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	/**
+	 * Waits until the call fits under the current limit. Each acquire
+	 * must be followed by {@link #release(long, boolean)}.
+	 */
+	public synchronized void acquire(long timeoutMillis) throws CommunicationException {
+		long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeoutMillis);
+		try {
+			while(inFlight >= (int) limit) {
+				long remaining = deadline - System.nanoTime();
+				if(remaining <= 0) {
+					throw new CapacityExceededException("Itsm service is overloaded, " + inFlight
+							+ " calls in progress with current limit " + (int) limit);
+				}
+				MILLISECONDS.timedWait(this, Math.max(1, remaining / 1_000_000));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CommunicationException("Interrupted while waiting for Itsm call slot", e);
+		}
+		inFlight++;
+	}
+
+	/**
+	 * Takes a slot if the call fits under the current limit, never waits. Successful
+	 * tryAcquire must be followed by {@link #release(long, boolean)} or {@link #cancel()}.
+	 */
+	public synchronized boolean tryAcquire() {
+		if(inFlight >= (int) limit) {
+			return false;
+		}
+		inFlight++;
+		return true;
+	}
+
+	/**
+	 * Gives back a slot of a call that was not sent, the limit is not changed.
+	 */
+	public synchronized void cancel() {
+		inFlight--;
+		notifyAll();
+	}
+
+	/**
+	 * @param latencyNanos duration of the call
+	 * @param dropped call failed or service reported an error
+	 */
+	public synchronized void release(long latencyNanos, boolean dropped) {
+		boolean saturated = inFlight >= (int) limit;
+		inFlight--;
+
+		if( ! dropped) {
+			if(latencyNanos < bestLatencyNanos) {
+				bestLatencyNanos = latencyNanos;
+			} else {
+				bestLatencyNanos = Math.min(bestLatencyNanos * BEST_LATENCY_DRIFT, latencyNanos);
+			}
+		}
+
+		double previous = limit;
+		if(dropped || latencyNanos > LATENCY_TOLERANCE * bestLatencyNanos) {
+			limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+		} else if(saturated) {
+			// raise only when the limit is actually what holds the callers back
+			limit = Math.min(maxLimit, limit + 1.0 / limit);
+		}
+
+		if((int) previous != (int) limit) {
+			LOGGER.debug("Itsm concurrency limit changed from {} to {}", (int) previous, (int) limit);
+		}
+		notifyAll();
+	}
+
+	public synchronized int getLimit() {
+		return (int) limit;
+	}
+
+	public synchronized int getInFlight() {
+		return inFlight;
+	}
+}
@@ -0,0 +1,279 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.ws.Response;
+import javax.xml.ws.WebServiceException;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+import eu.domainname.integrator.IntegrationEndpoint;
+import eu.domainname.integrator.IntegrationOperationInput;
+import eu.domainname.integrator.IntegrationOperationOutput;
+import eu.domainname.integrator.StatusEnumType;
+
+/**
+ * Non-blocking invocation of the Itsm web service using the jax-ws async binding.
+ *
+ * At most maxInFlight requests are sent at the same time, the rest waits in a queue
+ * (bounded by maxPending) without holding any thread. Queued requests are sent
+ * as the previous ones complete.
+ *
+ * Requests obey the same rate and concurrency limits as the synchronous calls. A request that
+ * doesn't fit under them stays queued and the dispatch is tried again later, nothing waits.
+ * Latency and errors of the sent requests are fed back to the concurrency limiter.
+ *
+ * A cancelled request that is already being sent keeps its slot until the transport reports it
+ * finished, the http exchange goes on after the cancel and still counts as in flight.
+ */
+public class AsyncDispatcher {
+
+	private static final Trace LOGGER = TraceManager.getTrace(AsyncDispatcher.class);
+
+	// slots freed by synchronous calls are not signalled to the dispatcher, so check again soon
+	private static final long CONCURRENCY_RECHECK_NANOS = MILLISECONDS.toNanos(10);
+
+	// only schedules dispatching, requests are sent by the jax-ws async machinery
+	private static final ScheduledExecutorService DELAYED_DISPATCH = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "itsm-async-dispatch");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	// async invocation does not touch the shared request context,
+	// so unlike the synchronous calls all of them can go through one proxy
+	private final IntegrationEndpoint itsmService;
+	private final int maxInFlight;
+	private final int maxPending;
+	private final TokenBucket rateLimiter; // null if not enabled
+	private final AdaptiveConcurrencyLimiter concurrencyLimiter; // null if not enabled
+
+	private final Deque<PendingCall> pending = new ConcurrentLinkedDeque<>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicBoolean dispatchScheduled = new AtomicBoolean();
+
+	private volatile boolean closed = false;
+
+	public AsyncDispatcher(IntegrationEndpoint itsmService, int maxInFlight, int maxPending) {
+		this(itsmService, maxInFlight, maxPending, null, null);
+	}
+
+	public AsyncDispatcher(IntegrationEndpoint itsmService, int maxInFlight, int maxPending,
+			TokenBucket rateLimiter, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+		this.itsmService = itsmService;
+		this.maxInFlight = maxInFlight;
+		this.maxPending = maxPending;
+		this.rateLimiter = rateLimiter;
+		this.concurrencyLimiter = concurrencyLimiter;
+	}
+
+	/**
+	 * Queues the request, returned future is completed with the response
+	 * or with CommunicationException/WebServiceException on failure.
+	 * Cancelling the future cancels the request.
+	 */
+	public CompletableFuture<IntegrationOperationOutput> submit(IntegrationOperationInput request) {
+		CompletableFuture<IntegrationOperationOutput> future = new CompletableFuture<>();
+		if(closed) {
+			future.completeExceptionally(new CommunicationException("Itsm async dispatcher is closed"));
+			return future;
+		}
+		if(pendingCount.incrementAndGet() > maxPending) {
+			pendingCount.decrementAndGet();
+			future.completeExceptionally(new CapacityExceededException(
+					"Too many pending Itsm requests, the limit is " + maxPending));
+			return future;
+		}
+
+		pending.offer(new PendingCall(request, future));
+		dispatchPending();
+		return future;
+	}
+
+	/**
+	 * Fails all queued requests, requests already sent are left to complete.
+	 */
+	public void close() {
+		closed = true;
+		PendingCall call;
+		while((call = pending.poll()) != null) {
+			pendingCount.decrementAndGet();
+			call.future.completeExceptionally(new CommunicationException("Itsm async dispatcher is closed"));
+		}
+		ConfigurableServiceFactory.closeQuietly(itsmService);
+	}
+
+	public int getInFlightCount() {
+		return inFlight.get();
+	}
+
+	public int getPendingCount() {
+		return pendingCount.get();
+	}
+
+	private void dispatchPending() {
+		while( ! pending.isEmpty()) {
+			int current = inFlight.get();
+			if(current >= maxInFlight) {
+				// completion of a running request dispatches the rest
+				return;
+			}
+			if( ! inFlight.compareAndSet(current, current + 1)) {
+				continue;
+			}
+
+			PendingCall call = pending.pollFirst();
+			if(call == null) {
+				// taken by another thread, give the slot back
+				inFlight.decrementAndGet();
+				continue;
+			}
+			if(call.future.isDone()) {
+				// cancelled while waiting in the queue
+				pendingCount.decrementAndGet();
+				inFlight.decrementAndGet();
+				continue;
+			}
+			long admissionDelay = admit();
+			if(admissionDelay > 0) {
+				// stays first in the queue
+				pending.offerFirst(call);
+				inFlight.decrementAndGet();
+				scheduleDispatch(admissionDelay);
+				return;
+			}
+			pendingCount.decrementAndGet();
+			dispatch(call);
+		}
+	}
+
+	/**
+	 * Takes a concurrency slot and a rate token for the next request.
+	 *
+	 * @return 0 if the request can be sent, otherwise nanoseconds to wait before trying again
+	 */
+	private long admit() {
+		if(concurrencyLimiter != null && ! concurrencyLimiter.tryAcquire()) {
+			return CONCURRENCY_RECHECK_NANOS;
+		}
+		if(rateLimiter != null) {
+			long wait = rateLimiter.tryAcquire();
+			if(wait > 0) {
+				if(concurrencyLimiter != null) {
+					concurrencyLimiter.cancel();
+				}
+				return wait;
+			}
+		}
+		return 0;
+	}
+
+	private void scheduleDispatch(long delayNanos) {
+		if(closed || ! dispatchScheduled.compareAndSet(false, true)) {
+			return;
+		}
+		DELAYED_DISPATCH.schedule(() -> {
+			dispatchScheduled.set(false);
+			dispatchPending();
+		}, delayNanos, NANOSECONDS);
+	}
+
+	private void dispatch(PendingCall call) {
+		long start = System.nanoTime();
+		try {
+			Future<?> sent = itsmService.integrationOperationAsync(call.request, response -> {
+				try {
+					complete(call.future, response);
+				} finally {
+					finished(call, start);
+				}
+			});
+			call.future.whenComplete((response, failure) -> {
+				// a request not started yet is dropped and its handler may never be called,
+				// a started one is released by its handler
+				if(call.future.isCancelled() && sent.cancel(true)) {
+					finished(call, start);
+				}
+			});
+		} catch (RuntimeException e) {
+			call.future.completeExceptionally(translate(e));
+			finished(call, start);
+		}
+	}
+
+	private void finished(PendingCall call, long start) {
+		if( ! call.finished.compareAndSet(false, true)) {
+			// already released on cancel before sending
+			return;
+		}
+		released(call, start);
+		inFlight.decrementAndGet();
+		dispatchPending();
+	}
+
+	private void released(PendingCall call, long start) {
+		if(concurrencyLimiter == null) {
+			return;
+		}
+		if(call.future.isCancelled()) {
+			// e.g. the slower hedged request, its latency tells nothing
+			concurrencyLimiter.cancel();
+			return;
+		}
+		IntegrationOperationOutput response = call.future.isCompletedExceptionally() ? null : call.future.getNow(null);
+		boolean dropped = response == null || response.getStatus() == StatusEnumType.ERROR;
+		concurrencyLimiter.release(System.nanoTime() - start, dropped);
+	}
+
+	private static void complete(CompletableFuture<IntegrationOperationOutput> future,
+			Response<IntegrationOperationOutput> response) {
+		try {
+			future.complete(response.get());
+		} catch (ExecutionException e) {
+			future.completeExceptionally(translate(e.getCause()));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(new CommunicationException("Interrupted while reading Itsm response", e));
+		} catch (RuntimeException e) {
+			// cancelled response
+			future.completeExceptionally(e);
+		}
+	}
+
+	private static Throwable translate(Throwable failure) {
+		if(failure instanceof WebServiceException) {
+			try {
+				ConfigurableServiceFactory.handleWebServiceException((WebServiceException) failure);
+			} catch (CommunicationException e) {
+				return e;
+			}
+		}
+		LOGGER.debug("Itsm async request failed", failure);
+		return failure;
+	}
+
+	private static final class PendingCall {
+		private final IntegrationOperationInput request;
+		private final CompletableFuture<IntegrationOperationOutput> future;
+		private final AtomicBoolean finished = new AtomicBoolean();
+
+		private PendingCall(IntegrationOperationInput request, CompletableFuture<IntegrationOperationOutput> future) {
+			this.request = request;
+			this.future = future;
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+
+/**
+ * The call was not sent because a local limit was reached (all pooled clients busy,
+ * rate or concurrency limit). It tells nothing about the Itsm service itself, so it is
+ * not a failure for the circuit breaker and retrying it would only wait longer.
+ */
+public class CapacityExceededException extends CommunicationException {
+
+	private static final long serialVersionUID = 1L;
+
+	public CapacityExceededException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,150 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Stops calling the Itsm service when too many of the recent calls failed.
+ *
+ * Outcomes of the last windowSize calls are tracked. When at least minimumCalls were recorded
+ * and the failure rate reaches the threshold, the breaker opens and all calls fail fast for
+ * openDuration. Then a single probe call is let through (half-open state), its success closes
+ * the breaker, its failure opens it again.
+ */
+public class CircuitBreaker {
+
+	private static final Trace LOGGER = TraceManager.getTrace(CircuitBreaker.class);
+
+	public enum State {
+		CLOSED, OPEN, HALF_OPEN
+	}
+
+	private final int minimumCalls;
+	private final int failureRateThreshold;
+	private final long openDurationMillis;
+
+	// ring buffer of recent outcomes, true is failure
+	private final boolean[] outcomes;
+	private int next = 0;
+	private int recorded = 0;
+	private int failures = 0;
+
+	private State state = State.CLOSED;
+	private long openedAt;
+	private boolean probeInFlight = false;
+
+	/**
+	 * @param failureRateThreshold in percent
+	 */
+	public CircuitBreaker(int windowSize, int minimumCalls, int failureRateThreshold, long openDurationMillis) {
+		this.outcomes = new boolean[windowSize];
+		this.minimumCalls = Math.min(minimumCalls, windowSize);
+		this.failureRateThreshold = failureRateThreshold;
+		this.openDurationMillis = openDurationMillis;
+	}
+
+	/**
+	 * Must be called before each call, every permitted call must be followed
+	 * by one of {@link #onSuccess()}, {@link #onFailure()} or {@link #onIgnored()}.
+	 *
+	 * @throws CommunicationException when the breaker is open
+	 */
+	public synchronized void acquirePermission() throws CommunicationException {
+		switch(state) {
+			case CLOSED:
+				return;
+			case OPEN:
+				if(System.currentTimeMillis() - openedAt < openDurationMillis) {
+					throw new CommunicationException("Itsm service calls are suspended after too many failures, "
+							+ "failing fast until " + (openedAt + openDurationMillis));
+				}
+				LOGGER.info("Itsm circuit breaker is half-open, sending probe call");
+				state = State.HALF_OPEN;
+				probeInFlight = true;
+				return;
+			case HALF_OPEN:
+			default:
+				if(probeInFlight) {
+					throw new CommunicationException("Itsm service calls are suspended, waiting for the probe call to finish");
+				}
+				probeInFlight = true;
+				return;
+		}
+	}
+
+	public synchronized void onSuccess() {
+		switch(state) {
+			case HALF_OPEN:
+				LOGGER.info("Itsm circuit breaker probe succeeded, closing");
+				reset();
+				state = State.CLOSED;
+				return;
+			case CLOSED:
+				record(false);
+				return;
+			default:
+				// late answer of a call permitted before the breaker opened
+				return;
+		}
+	}
+
+	public synchronized void onFailure() {
+		switch(state) {
+			case HALF_OPEN:
+				LOGGER.warn("Itsm circuit breaker probe failed, opening again");
+				open();
+				return;
+			case CLOSED:
+				record(true);
+				if(recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+					LOGGER.warn("Itsm circuit breaker opening, {} of last {} calls failed", failures, recorded);
+					open();
+				}
+				return;
+			default:
+				return;
+		}
+	}
+
+	/**
+	 * Permitted call ended in a way that says nothing about the service health.
+	 */
+	public synchronized void onIgnored() {
+		if(state == State.HALF_OPEN) {
+			probeInFlight = false;
+		}
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	private void open() {
+		reset();
+		state = State.OPEN;
+		openedAt = System.currentTimeMillis();
+	}
+
+	private void record(boolean failure) {
+		if(recorded == outcomes.length) {
+			if(outcomes[next]) {
+				failures--;
+			}
+		} else {
+			recorded++;
+		}
+		outcomes[next] = failure;
+		if(failure) {
+			failures++;
+		}
+		next = (next + 1) % outcomes.length;
+	}
+
+	private void reset() {
+		next = 0;
+		recorded = 0;
+		failures = 0;
+		probeInFlight = false;
+	}
+}
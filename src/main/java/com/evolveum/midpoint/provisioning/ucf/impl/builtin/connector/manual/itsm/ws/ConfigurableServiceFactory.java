@@ -16,6 +16,8 @@ import javax.net.ssl.X509TrustManager;
 import javax.xml.ws.WebServiceException;
 import javax.xml.ws.soap.SOAPFaultException;
 
+import org.apache.cxf.Bus;
+import org.apache.cxf.BusFactory;
 import org.apache.cxf.configuration.jsse.TLSClientParameters;
 import org.apache.cxf.endpoint.Client;
 import org.apache.cxf.feature.LoggingFeature;
@@ -24,6 +26,9 @@ import org.apache.cxf.frontend.ClientProxyFactoryBean;
 import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
 import org.apache.cxf.transport.http.HTTPConduit;
 import org.apache.cxf.transport.http.HTTPException;
+import org.apache.cxf.transport.http.asyncclient.AsyncHTTPConduitFactory;
+import org.apache.cxf.transport.http.asyncclient.AsyncHTTPConduitFactory.UseAsyncPolicy;
+import org.apache.cxf.transports.http.configuration.ConnectionType;
 import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.apache.cxf.transports.http.configuration.ProxyServerType;
 import org.apache.cxf.ws.security.wss4j.WSS4JOutInterceptor;
@@ -43,8 +48,43 @@ public class ConfigurableServiceFactory {
 	private static final String LOG_REQUEST_FILENAME_DEFAULT = "itsm-io.log.xml";
 	private static final String LOG_RESPONSE_FILENAME_DEFAULT = "itsm-io.log.xml";
 
+	/**
+	 * Creates cxf bus with http transport settings from configuration. Services created on the same
+	 * bus share the http connection pool of AsyncHttpClient transport.
+	 */
+	public static Bus createBus(ItsmManualConnectorConfiguration configuration) {
+		final Bus bus = BusFactory.newInstance().createBus();
+		if(configuration.isAsyncHttpClientTransport()) {
+			// all calls go through the pooled keep-alive connections, not only the async ones
+			bus.setProperty(AsyncHTTPConduitFactory.USE_POLICY, UseAsyncPolicy.ALWAYS);
+			bus.setProperty(AsyncHTTPConduitFactory.MAX_CONNECTIONS, configuration.getHttpMaxConnections());
+			bus.setProperty(AsyncHTTPConduitFactory.MAX_PER_HOST_CONNECTIONS, configuration.getHttpMaxConnectionsPerHost());
+			bus.setProperty(AsyncHTTPConduitFactory.CONNECTION_MAX_IDLE, configuration.getHttpConnectionMaxIdle().intValue());
+			bus.setProperty(AsyncHTTPConduitFactory.CONNECTION_TTL, configuration.getHttpConnectionTtl().intValue());
+			bus.setProperty(AsyncHTTPConduitFactory.SO_KEEPALIVE, Boolean.TRUE);
+		}
+		return bus;
+	}
+
+	public static void shutdownQuietly(final Bus bus) {
+		try {
+			if (bus != null) {
+				bus.shutdown(true);
+			}
+		} catch (Exception e) {
+			LOGGER.error("Error shutting down cxf bus, ignoring as non fatal.", e);
+		}
+	}
+
 	public static <S> S createService(final Class<S> seiClass, ItsmManualConnectorConfiguration configuration) {
+		return createService(seiClass, configuration, null);
+	}
+
+	public static <S> S createService(final Class<S> seiClass, ItsmManualConnectorConfiguration configuration, Bus bus) {
 		final ClientProxyFactoryBean factory = new JaxWsProxyFactoryBean();   // a new instance must be used for each service
+		if (bus != null) {
+			factory.setBus(bus);
+		}
 		final Path soapLogTargetPath = configuration.getSoapLogBasedirPath();
 		if (soapLogTargetPath != null) {
 			try {
@@ -69,6 +109,7 @@ public class ConfigurableServiceFactory {
 		final S result = (S) factory.create();
 		
 		setWsseUsernameToken(result, configuration);
+		setConnectionPolicy(result, configuration);
 		if(isNotBlank(configuration.getProxyUrl())) {
 			setProxy(result, configuration);
 		}
@@ -120,6 +161,16 @@ public class ConfigurableServiceFactory {
 		    }
 		  }
 
+	private static void setConnectionPolicy(Object cxfService, ItsmManualConnectorConfiguration configuration) {
+		final Client client = ClientProxy.getClient(cxfService);
+		HTTPConduit httpConduit = (HTTPConduit)client.getConduit();
+		HTTPClientPolicy httpClient = httpConduit.getClient();
+
+		httpClient.setConnection(ConnectionType.KEEP_ALIVE);
+		httpClient.setConnectionTimeout(configuration.getTimeout());
+		httpClient.setReceiveTimeout(configuration.getTimeout());
+	}
+
 	private static void setProxy(Object cxfService, ItsmManualConnectorConfiguration configuration) {
 		final Client client = ClientProxy.getClient(cxfService);
 		HTTPConduit httpConduit = (HTTPConduit)client.getConduit();
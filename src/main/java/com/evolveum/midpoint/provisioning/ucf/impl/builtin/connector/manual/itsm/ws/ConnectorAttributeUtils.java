@@ -65,7 +65,7 @@ public class ConnectorAttributeUtils {
 				return ts;
 			}
 		}
-		LOGGER.error("Ticket status " + code + " from ws response is not specified, returning null status!");
+		LOGGER.error("Ticket status " + code + " is not specified, returning null status!");
 		return null;
 	}
 }
@@ -47,6 +47,13 @@ public enum ItsmAttributes {
 		return result;
 	}
 
+	/**
+	 * @return maximal length of the value, null if not limited
+	 */
+	public Integer getMaxLength() {
+		return maxLength;
+	}
+
 	public String getDefaultValue() {
 		return defaultValue;
 	}
@@ -0,0 +1,154 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+import eu.domainname.integrator.IntegrationOperationInput;
+import eu.domainname.integrator.IntegrationOperationOutput;
+
+/**
+ * Cuts the tail latency of read-only requests. When the request is not answered within
+ * the configured percentile of recent latencies, the same request is sent once more.
+ * The first answer wins, the other request is cancelled.
+ *
+ * Only GetEntry may be hedged, sending Create twice would create two tickets.
+ */
+public class RequestHedging {
+
+	private static final Trace LOGGER = TraceManager.getTrace(RequestHedging.class);
+
+	private static final int WINDOW_SIZE = 200;
+	// percentile is recomputed after this number of new samples
+	private static final int RECOMPUTE_INTERVAL = 20;
+
+	private final int percentile;
+	private final long minDelayMillis;
+
+	private final long[] latencies = new long[WINDOW_SIZE];
+	private int next = 0;
+	private int recorded = 0;
+	private int sinceRecompute = 0;
+	private long delayMillis;
+
+	/**
+	 * @param percentile of recent latencies used as hedging delay, e.g. 95
+	 * @param minDelayMillis lower bound of hedging delay, used until enough latencies are recorded
+	 */
+	public RequestHedging(int percentile, long minDelayMillis) {
+		this.percentile = percentile;
+		this.minDelayMillis = minDelayMillis;
+		this.delayMillis = minDelayMillis;
+	}
+
+	/**
+	 * Sends the request using sender, hedges it if it is slow. Waits for the answer.
+	 */
+	public IntegrationOperationOutput call(IntegrationOperationInput request,
+			Function<IntegrationOperationInput, CompletableFuture<IntegrationOperationOutput>> sender)
+					throws CommunicationException {
+
+		if( ! MessageType.GET_ENTRY.value().equals(request.getMessageType())) {
+			throw new IllegalArgumentException("Only " + MessageType.GET_ENTRY.value() 
+					+ " requests can be hedged, not " + request.getMessageType());
+		}
+
+		long delay = getDelayMillis();
+		CompletableFuture<IntegrationOperationOutput> primary = timed(request, sender);
+		try {
+			return primary.get(delay, MILLISECONDS);
+		} catch (TimeoutException e) {
+			// slow, hedge below
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		} catch (InterruptedException e) {
+			primary.cancel(true);
+			throw interrupted(e);
+		}
+
+		LOGGER.trace("Itsm GetEntry not answered in {} ms, sending hedged request", delay);
+		CompletableFuture<IntegrationOperationOutput> hedged = timed(request, sender);
+		try {
+			return firstSuccessful(primary, hedged).get();
+		} catch (ExecutionException e) {
+			throw unwrap(e);
+		} catch (InterruptedException e) {
+			throw interrupted(e);
+		} finally {
+			// the loser, cancelling the completed one does nothing
+			primary.cancel(true);
+			hedged.cancel(true);
+		}
+	}
+
+	public synchronized long getDelayMillis() {
+		return delayMillis;
+	}
+
+	private CompletableFuture<IntegrationOperationOutput> timed(IntegrationOperationInput request,
+			Function<IntegrationOperationInput, CompletableFuture<IntegrationOperationOutput>> sender) {
+		long start = System.nanoTime();
+		CompletableFuture<IntegrationOperationOutput> future = sender.apply(request);
+		future.whenComplete((response, failure) -> {
+			if(failure == null) {
+				record(NANOSECONDS.toMillis(System.nanoTime() - start));
+			}
+		});
+		return future;
+	}
+
+	private synchronized void record(long latencyMillis) {
+		latencies[next] = latencyMillis;
+		next = (next + 1) % WINDOW_SIZE;
+		recorded = Math.min(recorded + 1, WINDOW_SIZE);
+
+		if(++sinceRecompute >= RECOMPUTE_INTERVAL) {
+			sinceRecompute = 0;
+			long[] sorted = Arrays.copyOf(latencies, recorded);
+			Arrays.sort(sorted);
+			int index = Math.min(recorded - 1, (int) Math.ceil(percentile / 100.0 * recorded) - 1);
+			delayMillis = Math.max(minDelayMillis, sorted[Math.max(0, index)]);
+		}
+	}
+
+	private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		AtomicInteger failures = new AtomicInteger();
+		for(CompletableFuture<T> future : Arrays.asList(first, second)) {
+			future.whenComplete((value, failure) -> {
+				if(failure == null) {
+					result.complete(value);
+				} else if(failures.incrementAndGet() == 2) {
+					result.completeExceptionally(failure);
+				}
+			});
+		}
+		return result;
+	}
+
+	private static CommunicationException unwrap(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if(cause instanceof CommunicationException) {
+			return (CommunicationException) cause;
+		}
+		if(cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		return new CommunicationException("Itsm request failed: " + cause.getMessage(), cause);
+	}
+
+	private static CommunicationException interrupted(InterruptedException e) {
+		Thread.currentThread().interrupt();
+		return new CommunicationException("Interrupted while waiting for Itsm response", e);
+	}
+}
@@ -0,0 +1,46 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff with full jitter, callers retrying at the same time
+ * do not hit the service again at the same moment.
+ */
+public class RetryPolicy {
+
+	private final int maxAttempts;
+	private final long initialBackoffMillis;
+	private final long maxBackoffMillis;
+
+	public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+		this.maxAttempts = maxAttempts;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+	}
+
+	/**
+	 * @param attempt number of the failed attempt, starting with 1
+	 */
+	public boolean canRetry(int attempt) {
+		return attempt < maxAttempts;
+	}
+
+	/**
+	 * Random delay between 0 and initialBackoff * 2^(attempt-1), at most maxBackoff.
+	 *
+	 * @param attempt number of the failed attempt, starting with 1
+	 */
+	public long backoffMillis(int attempt) {
+		int exponent = Math.min(attempt - 1, 30);
+		long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << exponent);
+		if(ceiling <= 0) {
+			// shift overflow
+			ceiling = maxBackoffMillis;
+		}
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+}
@@ -0,0 +1,167 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+import com.evolveum.midpoint.util.logging.Trace;
+import com.evolveum.midpoint.util.logging.TraceManager;
+
+/**
+ * Bounded pool of web service proxies. Cxf proxies are not used concurrently,
+ * each call borrows its own proxy and returns it afterwards.
+ *
+ * Proxies are created lazily up to the maximal pool size. Proxies not used
+ * for longer than the maximal idle time are destroyed.
+ *
+ * @param <S> service endpoint interface
+ */
+public class ServicePool<S> {
+
+	private static final Trace LOGGER = TraceManager.getTrace(ServicePool.class);
+
+	private final Supplier<S> factory;
+	private final Consumer<S> destroyer;
+	private final int maxSize;
+	private final long maxIdleMillis;
+	private final long borrowTimeoutMillis;
+
+	private final Semaphore permits;
+
+	// used as a stack, recently returned proxies are reused first and the rest ages out
+	private final Deque<IdleService<S>> idle = new ConcurrentLinkedDeque<>();
+
+	private volatile boolean closed = false;
+
+	public ServicePool(Supplier<S> factory, Consumer<S> destroyer,
+			int maxSize, long maxIdleMillis, long borrowTimeoutMillis) {
+		this.factory = factory;
+		this.destroyer = destroyer;
+		this.maxSize = maxSize;
+		this.maxIdleMillis = maxIdleMillis;
+		this.borrowTimeoutMillis = borrowTimeoutMillis;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Borrows proxy from the pool, creates a new one if there is no idle proxy.
+	 * Waits at most borrow timeout if all proxies are in use.
+	 */
+	public S borrow() throws CommunicationException {
+		if(closed) {
+			throw new IllegalStateException("Service pool is closed");
+		}
+
+		try {
+			if( ! permits.tryAcquire(borrowTimeoutMillis, MILLISECONDS)) {
+				throw new CapacityExceededException("No Itsm web service client available in "
+						+ borrowTimeoutMillis + " ms, all " + maxSize + " clients are in use");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CommunicationException("Interrupted while waiting for Itsm web service client", e);
+		}
+
+		try {
+			evictIdle();
+			IdleService<S> pooled = idle.pollFirst();
+			if(pooled != null) {
+				return pooled.service;
+			}
+			LOGGER.trace("Creating new pooled Itsm web service client");
+			return factory.get();
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns healthy proxy to the pool.
+	 */
+	public void release(S service) {
+		if(closed) {
+			destroyer.accept(service);
+		} else {
+			idle.offerFirst(new IdleService<>(service, System.currentTimeMillis()));
+			if(closed) {
+				// closed concurrently, make sure nothing is left behind
+				destroyIdle();
+			}
+		}
+		permits.release();
+	}
+
+	/**
+	 * Destroys proxy that failed and should not be reused, e.g. after transport error.
+	 */
+	public void invalidate(S service) {
+		try {
+			destroyer.accept(service);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Destroys proxies idle for longer than maximal idle time.
+	 */
+	public void evictIdle() {
+		long oldestAllowed = System.currentTimeMillis() - maxIdleMillis;
+		Iterator<IdleService<S>> oldestFirst = idle.descendingIterator();
+		while(oldestFirst.hasNext()) {
+			IdleService<S> pooled = oldestFirst.next();
+			if(pooled.idleSince >= oldestAllowed) {
+				return;
+			}
+			// may have been borrowed meanwhile, destroy only if we really removed it
+			if(idle.removeLastOccurrence(pooled)) {
+				LOGGER.trace("Evicting Itsm web service client idle since {}", pooled.idleSince);
+				destroyer.accept(pooled.service);
+			}
+		}
+	}
+
+	/**
+	 * Destroys idle proxies, borrowed proxies are destroyed when returned.
+	 */
+	public void close() {
+		closed = true;
+		destroyIdle();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getActiveCount() {
+		return maxSize - permits.availablePermits();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	private void destroyIdle() {
+		IdleService<S> pooled;
+		while((pooled = idle.pollFirst()) != null) {
+			destroyer.accept(pooled.service);
+		}
+	}
+
+	private static final class IdleService<S> {
+		private final S service;
+		private final long idleSince;
+
+		private IdleService(S service, long idleSince) {
+			this.service = service;
+			this.idleSince = idleSince;
+		}
+	}
+}
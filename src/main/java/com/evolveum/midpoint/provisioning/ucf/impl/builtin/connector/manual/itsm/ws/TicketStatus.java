@@ -29,4 +29,11 @@ public enum TicketStatus {
 		TicketStatus.values();
 		return code;
 	}
+
+	/**
+	 * Final status does not change any more.
+	 */
+	public boolean isFinal() {
+		return this == RESOLVED || this == CLOSED || this == CANCELLED;
+	}
 }
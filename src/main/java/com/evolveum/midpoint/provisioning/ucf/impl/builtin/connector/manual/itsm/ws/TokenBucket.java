@@ -0,0 +1,90 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+
+/**
+ * Hard cap of the request rate. Tokens are refilled continuously,
+ * up to one second worth of requests can be sent in a burst.
+ */
+public class TokenBucket {
+
+	// connectors of all resources using the same Itsm profile share one bucket
+	private static final ConcurrentMap<String, TokenBucket> SHARED = new ConcurrentHashMap<>();
+
+	private final int ratePerSecond;
+	private final double nanosPerToken;
+
+	private double tokens;
+	private long refilledAt;
+
+	public TokenBucket(int ratePerSecond) {
+		this.ratePerSecond = ratePerSecond;
+		this.nanosPerToken = (double) SECONDS.toNanos(1) / ratePerSecond;
+		this.tokens = ratePerSecond;
+		this.refilledAt = System.nanoTime();
+	}
+
+	/**
+	 * Returns bucket shared by all connectors calling the same profile of the same service.
+	 */
+	public static TokenBucket shared(String wsUrl, String profileName, int ratePerSecond) {
+		String key = wsUrl + "#" + profileName;
+		return SHARED.compute(key, (k, bucket) ->
+				bucket != null && bucket.ratePerSecond == ratePerSecond ? bucket : new TokenBucket(ratePerSecond));
+	}
+
+	/**
+	 * Takes one token, waits for it if the bucket is empty.
+	 *
+	 * @throws CapacityExceededException if the token would not be available within timeout
+	 */
+	public void acquire(long timeoutMillis) throws CommunicationException {
+		long waitNanos;
+		synchronized (this) {
+			refill();
+			// reserve the token now, waiting callers are served in arrival order
+			tokens -= 1;
+			waitNanos = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+			if(waitNanos > MILLISECONDS.toNanos(timeoutMillis)) {
+				tokens += 1;
+				throw new CapacityExceededException("Itsm request rate limit of " + ratePerSecond
+						+ " requests per second exceeded");
+			}
+		}
+
+		if(waitNanos > 0) {
+			try {
+				MILLISECONDS.sleep(Math.max(1, waitNanos / 1_000_000));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CommunicationException("Interrupted while waiting for Itsm rate limit", e);
+			}
+		}
+	}
+
+	/**
+	 * Takes one token if it is available now, never waits.
+	 *
+	 * @return 0 if the token was taken, otherwise nanoseconds until a token should be available
+	 */
+	public synchronized long tryAcquire() {
+		refill();
+		if(tokens >= 1) {
+			tokens -= 1;
+			return 0;
+		}
+		return Math.max(1, (long) ((1 - tokens) * nanosPerToken));
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(ratePerSecond, tokens + (now - refilledAt) / nanosPerToken);
+		refilledAt = now;
+	}
+}
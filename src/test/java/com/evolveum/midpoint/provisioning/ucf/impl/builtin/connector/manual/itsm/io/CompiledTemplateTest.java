@@ -0,0 +1,40 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class CompiledTemplateTest {
+
+	@Test
+	public void rendersReferences() {
+		TemplateContext context = new TemplateContext();
+		context.setOperation("create");
+		context.setcIName("LDAP");
+		context.setAccountChanges("cn: John");
+
+		CompiledTemplate template = CompiledTemplate.compile(
+				"IDM request: ${operation} account on $cIName.$nl$accountChanges$nl$!{identifier}$!identifier end");
+
+		assertEquals("IDM request: create account on LDAP.\ncn: John\n end", template.render(context));
+	}
+
+	@Test
+	public void rendersNullReferenceAsWritten() {
+		TemplateContext context = new TemplateContext();
+
+		assertEquals("id ${identifier} $identifier costs $ 10",
+				CompiledTemplate.compile("id ${identifier} $identifier costs $ 10").render(context));
+	}
+
+	@Test
+	public void doesNotCompileVelocitySyntax() {
+		assertNull(CompiledTemplate.compile("#if($identifier)id $identifier#end"));
+		assertNull(CompiledTemplate.compile("## comment"));
+		assertNull(CompiledTemplate.compile("\\$operation"));
+		assertNull(CompiledTemplate.compile("$operation.toUpperCase()"));
+		assertNull(CompiledTemplate.compile("${unknown}"));
+		assertNull(CompiledTemplate.compile("${operation"));
+	}
+}
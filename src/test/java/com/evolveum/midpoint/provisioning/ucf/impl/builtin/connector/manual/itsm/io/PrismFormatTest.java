@@ -0,0 +1,75 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.junit.Test;
+
+import com.evolveum.midpoint.prism.PrismContext;
+import com.evolveum.midpoint.prism.PrismPropertyDefinitionImpl;
+import com.evolveum.midpoint.prism.PrismPropertyValue;
+import com.evolveum.midpoint.prism.delta.PropertyDelta;
+import com.evolveum.midpoint.provisioning.ucf.api.Operation;
+import com.evolveum.midpoint.provisioning.ucf.api.PropertyModificationOperation;
+
+public class PrismFormatTest {
+
+	@Test
+	public void parallelFormattingMatchesSequential() {
+		// single chunk plus one, exact chunks, several chunks with a partial last one
+		for(int count : new int[] { 65, 128, 200 }) {
+			List<Operation> changes = operations(count);
+
+			StringBuilder sequential = new StringBuilder("before\n");
+			PrismFormat.appendOperations(sequential, changes, 2, PrismFormat.UNLIMITED);
+			StringBuilder parallel = new StringBuilder("before\n");
+			PrismFormat.appendOperations(parallel, changes, 2, PrismFormat.UNLIMITED, 1);
+
+			assertEquals("Formatting of " + count + " operations", sequential.toString(), parallel.toString());
+		}
+	}
+
+	@Test
+	public void formattingStopsAtMaxLength() {
+		List<Operation> changes = operations(200);
+		String all = PrismFormat.operations(changes);
+
+		for(int maxLength : new int[] { 0, 1, 100, 1000, all.length() - 1 }) {
+			StringBuilder limited = new StringBuilder("before\n");
+			PrismFormat.appendOperations(limited, changes, PrismFormat.ALL_VALUES, maxLength);
+			assertEquals("before\n" + all.substring(0, maxLength), limited.toString());
+
+			StringBuilder parallel = new StringBuilder("before\n");
+			PrismFormat.appendOperations(parallel, changes, PrismFormat.ALL_VALUES, maxLength, 1);
+			assertEquals(limited.toString(), parallel.toString());
+		}
+	}
+
+	private static List<Operation> operations(int count) {
+		PrismContext prismContext = null;
+		List<Operation> changes = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			PropertyDelta<Object> propertyDelta = new PropertyDelta<>(
+					new PrismPropertyDefinitionImpl<>(
+							new QName("test:foo", "attribute" + i),
+							null,
+							prismContext),
+					prismContext);
+			propertyDelta.addValueToAdd(new PrismPropertyValue<>("value" + i));
+			if(i % 3 == 0) {
+				// more values than formatted
+				propertyDelta.addValueToAdd(new PrismPropertyValue<>("other" + i));
+				propertyDelta.addValueToAdd(new PrismPropertyValue<>("third" + i));
+			}
+			if(i % 2 == 0) {
+				propertyDelta.addValueToDelete(new PrismPropertyValue<>("old" + i));
+			}
+			changes.add(new PropertyModificationOperation<>(propertyDelta));
+		}
+		return changes;
+	}
+}
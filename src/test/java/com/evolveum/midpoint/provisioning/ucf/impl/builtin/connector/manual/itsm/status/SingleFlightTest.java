@@ -0,0 +1,83 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.evolveum.midpoint.util.exception.CommunicationException;
+
+public class SingleFlightTest {
+
+	@Test
+	public void concurrentCallersShareOneLoad() throws Exception {
+		SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Object value = new Object();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Object>> results = new ArrayList<>();
+			results.add(executor.submit(() -> singleFlight.execute("TT1", () -> {
+				loads.incrementAndGet();
+				loading.countDown();
+				await(release);
+				return value;
+			})));
+			loading.await(5, TimeUnit.SECONDS);
+			for(int i = 0; i < 3; i++) {
+				results.add(executor.submit(() -> singleFlight.execute("TT1", () -> {
+					loads.incrementAndGet();
+					return new Object();
+				})));
+			}
+			// let the waiters join the running load
+			Thread.sleep(100);
+			release.countDown();
+
+			for(Future<Object> result : results) {
+				assertSame(value, result.get(5, TimeUnit.SECONDS));
+			}
+			assertEquals(1, loads.get());
+			assertEquals(0, singleFlight.getInFlightCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void failureIsPropagatedAndNotRemembered() throws Exception {
+		SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+		try {
+			singleFlight.execute("TT1", () -> {
+				throw new CommunicationException("down");
+			});
+			fail("Exception expected");
+		} catch (CommunicationException e) {
+			assertEquals("down", e.getMessage());
+		}
+
+		assertEquals("ok", singleFlight.execute("TT1", () -> "ok"));
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+import com.evolveum.midpoint.util.exception.ConfigurationException;
+
+/**
+ * Sends notifications the way the Itsm system would.
+ */
+public class StatusPushListenerTest {
+
+	private final Map<String, TicketStatus> pushed = new ConcurrentHashMap<>();
+
+	private StatusPushListener listener;
+
+	@Before
+	public void startListener() throws IOException, ConfigurationException {
+		listener = StatusPushListener.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), null,
+				"itsm-push", "secret", pushed::put);
+	}
+
+	@After
+	public void stopListener() {
+		listener.close();
+	}
+
+	@Test
+	public void acceptsStatusChange() throws IOException {
+		int code = push("itsm-push", "secret", "Incident_Number=TT0000000000042&IncidentStatus=5");
+
+		assertEquals(HttpURLConnection.HTTP_NO_CONTENT, code);
+		assertEquals(TicketStatus.CLOSED, pushed.get("TT0000000000042"));
+	}
+
+	@Test
+	public void rejectsWrongPassword() throws IOException {
+		int code = push("itsm-push", "wrong", "Incident_Number=TT0000000000042&IncidentStatus=5");
+
+		assertEquals(HttpURLConnection.HTTP_UNAUTHORIZED, code);
+		assertTrue(pushed.isEmpty());
+	}
+
+	@Test
+	public void listensOnConfiguredAddressOnly() {
+		assertTrue(listener.getAddress().getAddress().isLoopbackAddress());
+	}
+
+	@Test(expected = ConfigurationException.class)
+	public void rejectsUnresolvedAddress() throws IOException, ConfigurationException {
+		StatusPushListener.start(InetSocketAddress.createUnresolved("itsm-push.invalid", 0), null,
+				"itsm-push", "secret", pushed::put);
+	}
+
+	@Test
+	public void rejectsUnknownStatus() throws IOException {
+		int code = push("itsm-push", "secret", "Incident_Number=TT0000000000042&IncidentStatus=99");
+
+		assertEquals(HttpURLConnection.HTTP_BAD_REQUEST, code);
+		assertTrue(pushed.isEmpty());
+	}
+
+	private int push(String username, String password, String form) throws IOException {
+		URL url = new URL("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" 
+				+ listener.getPort() + StatusPushListener.PATH);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+			connection.setRequestProperty("Authorization", "Basic "
+					+ Base64.getEncoder().encodeToString((username + ":" + password).getBytes(UTF_8)));
+			try (OutputStream body = connection.getOutputStream()) {
+				body.write(form.getBytes(UTF_8));
+			}
+			return connection.getResponseCode();
+		} finally {
+			connection.disconnect();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.status.TicketJournal.JournalEntry;
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.TicketStatus;
+
+public class TicketJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void reopenedJournalKnowsTicketsAndStatuses() throws IOException {
+		Path file = journalFile();
+		TicketJournal journal = TicketJournal.open(file);
+		journal.ticketCreated("TT1", "Add");
+		journal.statusSeen("TT1", TicketStatus.ASSIGNED);
+		journal.ticketCreated("TT2", "Delete");
+		journal.statusSeen("TT1", TicketStatus.CLOSED);
+		journal.close();
+
+		journal = TicketJournal.open(file);
+		try {
+			assertEquals(2, journal.size());
+			assertEquals(TicketStatus.CLOSED, journal.lastStatus("TT1"));
+			assertEquals("Add", journal.get("TT1").getOperation());
+			assertEquals("Delete", journal.get("TT2").getOperation());
+			assertNull(journal.lastStatus("TT2"));
+			assertNull(journal.get("TT3"));
+		} finally {
+			journal.close();
+		}
+	}
+
+	@Test
+	public void tornLastRecordIsIgnoredAndOverwritten() throws IOException {
+		Path file = journalFile();
+		TicketJournal journal = TicketJournal.open(file);
+		journal.ticketCreated("TT1", "Add");
+		journal.statusSeen("TT1", TicketStatus.ASSIGNED);
+		journal.close();
+
+		// crash while appending: record body written, length not yet
+		int end = recordLength("TT1", "Add") + recordLength("TT1", TicketStatus.ASSIGNED.getCode());
+		ByteBuffer torn = ByteBuffer.allocate(recordLength("TT1", TicketStatus.CLOSED.getCode()));
+		torn.putInt(0).put((byte) 2).putLong(System.currentTimeMillis());
+		torn.putShort((short) 3).put("TT1".getBytes(UTF_8));
+		torn.putShort((short) 1).put(TicketStatus.CLOSED.getCode().getBytes(UTF_8));
+		torn.flip();
+		try (FileChannel channel = FileChannel.open(file, WRITE)) {
+			channel.write(torn, end);
+		}
+
+		journal = TicketJournal.open(file);
+		assertEquals(TicketStatus.ASSIGNED, journal.lastStatus("TT1"));
+		journal.statusSeen("TT1", TicketStatus.IN_PROGRESS);
+		journal.close();
+
+		journal = TicketJournal.open(file);
+		try {
+			assertEquals(TicketStatus.IN_PROGRESS, journal.lastStatus("TT1"));
+			assertEquals("Add", journal.get("TT1").getOperation());
+		} finally {
+			journal.close();
+		}
+	}
+
+	@Test
+	public void compactionKeepsLatestState() throws IOException {
+		Path file = journalFile();
+		TicketJournal journal = TicketJournal.open(file);
+		journal.ticketCreated("TT1", "Add");
+		journal.statusSeen("TT1", TicketStatus.NEW);
+		journal.statusSeen("TT1", TicketStatus.ASSIGNED);
+		journal.statusSeen("TT1", TicketStatus.IN_PROGRESS);
+		journal.ticketCreated("TT2", "Modify");
+		journal.statusSeen("TT2", TicketStatus.RESOLVED);
+		JournalEntry before = journal.get("TT1");
+
+		journal.compact();
+
+		assertState(journal, before);
+		journal.statusSeen("TT2", TicketStatus.CLOSED);
+		journal.close();
+
+		journal = TicketJournal.open(file);
+		try {
+			assertState(journal, before);
+			assertEquals(TicketStatus.CLOSED, journal.lastStatus("TT2"));
+			assertEquals("Modify", journal.get("TT2").getOperation());
+		} finally {
+			journal.close();
+		}
+	}
+
+	@Test
+	public void secondInstanceIsRejected() throws IOException {
+		Path file = journalFile();
+		TicketJournal journal = TicketJournal.open(file);
+		try {
+			assertRejected(file);
+			// the failed attempt must not release the lock
+			assertRejected(file);
+		} finally {
+			journal.close();
+		}
+
+		// released on close
+		TicketJournal.open(file).close();
+	}
+
+	private void assertRejected(Path file) {
+		try {
+			TicketJournal.open(file).close();
+			fail("Journal opened twice");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	private void assertState(TicketJournal journal, JournalEntry expected) {
+		JournalEntry entry = journal.get("TT1");
+		assertEquals(2, journal.size());
+		assertEquals(TicketStatus.IN_PROGRESS, entry.getStatus());
+		assertEquals("Add", entry.getOperation());
+		assertEquals(expected.getCreatedAt(), entry.getCreatedAt());
+		assertEquals(expected.getStatusAt(), entry.getStatusAt());
+	}
+
+	private Path journalFile() {
+		return folder.getRoot().toPath().resolve("itsm-tickets.journal");
+	}
+
+	private static int recordLength(String incidentNumber, String value) {
+		return 4 + 1 + 8 + 2 + incidentNumber.length() + 2 + value.length();
+	}
+}
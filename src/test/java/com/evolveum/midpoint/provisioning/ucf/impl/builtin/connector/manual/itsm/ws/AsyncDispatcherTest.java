@@ -0,0 +1,118 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import javax.xml.ws.AsyncHandler;
+import javax.xml.ws.Response;
+
+import org.junit.Test;
+
+import eu.domainname.integrator.IntegrationEndpoint;
+import eu.domainname.integrator.IntegrationOperationInput;
+import eu.domainname.integrator.IntegrationOperationOutput;
+
+public class AsyncDispatcherTest {
+
+	@Test
+	public void cancellingUnstartedRequestFreesItsSlot() {
+		SilentEndpoint endpoint = new SilentEndpoint();
+		AsyncDispatcher dispatcher = new AsyncDispatcher(endpoint, 1, 10);
+
+		CompletableFuture<IntegrationOperationOutput> first = dispatcher.submit(new IntegrationOperationInput());
+		CompletableFuture<IntegrationOperationOutput> second = dispatcher.submit(new IntegrationOperationInput());
+		assertEquals(1, dispatcher.getInFlightCount());
+		assertEquals(1, dispatcher.getPendingCount());
+
+		first.cancel(true);
+
+		assertTrue(endpoint.sent.get(0).isCancelled());
+		// the queued request takes the freed slot
+		assertEquals(2, endpoint.sent.size());
+		assertEquals(1, dispatcher.getInFlightCount());
+		assertEquals(0, dispatcher.getPendingCount());
+
+		second.cancel(true);
+		assertEquals(0, dispatcher.getInFlightCount());
+	}
+
+	@Test
+	public void lateHandlerOfCancelledRequestDoesNotFreeAnotherSlot() {
+		SilentEndpoint endpoint = new SilentEndpoint();
+		AsyncDispatcher dispatcher = new AsyncDispatcher(endpoint, 2, 10);
+
+		CompletableFuture<IntegrationOperationOutput> first = dispatcher.submit(new IntegrationOperationInput());
+		dispatcher.submit(new IntegrationOperationInput());
+		first.cancel(true);
+		assertEquals(1, dispatcher.getInFlightCount());
+
+		// transport reports the cancelled request anyway
+		endpoint.handlers.get(0).handleResponse(null);
+
+		assertEquals(1, dispatcher.getInFlightCount());
+	}
+
+	@Test
+	public void cancelledStartedRequestKeepsItsSlotUntilHandled() {
+		SilentEndpoint endpoint = new SilentEndpoint();
+		endpoint.started = true;
+		AsyncDispatcher dispatcher = new AsyncDispatcher(endpoint, 1, 10);
+
+		CompletableFuture<IntegrationOperationOutput> first = dispatcher.submit(new IntegrationOperationInput());
+		dispatcher.submit(new IntegrationOperationInput());
+		first.cancel(true);
+
+		// the http exchange still runs
+		assertEquals(1, endpoint.sent.size());
+		assertEquals(1, dispatcher.getInFlightCount());
+		assertEquals(1, dispatcher.getPendingCount());
+
+		endpoint.handlers.get(0).handleResponse(null);
+
+		assertEquals(2, endpoint.sent.size());
+		assertEquals(1, dispatcher.getInFlightCount());
+		assertEquals(0, dispatcher.getPendingCount());
+	}
+
+	/**
+	 * Never answers, requests complete only when cancelled before they are started.
+	 */
+	private static final class SilentEndpoint implements IntegrationEndpoint {
+
+		private final List<CompletableFuture<IntegrationOperationOutput>> sent = new ArrayList<>();
+		private final List<AsyncHandler<IntegrationOperationOutput>> handlers = new ArrayList<>();
+		// sent requests can't be cancelled, like a running http exchange
+		private boolean started = false;
+
+		@Override
+		public IntegrationOperationOutput integrationOperation(IntegrationOperationInput in) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Response<IntegrationOperationOutput> integrationOperationAsync(IntegrationOperationInput in) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public Future<?> integrationOperationAsync(IntegrationOperationInput in,
+				AsyncHandler<IntegrationOperationOutput> asyncHandler) {
+			CompletableFuture<IntegrationOperationOutput> request = started ? new StartedRequest() : new CompletableFuture<>();
+			sent.add(request);
+			handlers.add(asyncHandler);
+			return request;
+		}
+	}
+
+	private static final class StartedRequest extends CompletableFuture<IntegrationOperationOutput> {
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			return false;
+		}
+	}
+}
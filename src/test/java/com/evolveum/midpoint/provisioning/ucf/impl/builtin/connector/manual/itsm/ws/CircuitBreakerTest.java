@@ -0,0 +1,91 @@
+package com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import com.evolveum.midpoint.provisioning.ucf.impl.builtin.connector.manual.itsm.ws.CircuitBreaker.State;
+import com.evolveum.midpoint.util.exception.CommunicationException;
+
+public class CircuitBreakerTest {
+
+	@Test
+	public void staysClosedBelowMinimumCalls() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(10, 5, 50, 60000);
+
+		for(int i = 0; i < 4; i++) {
+			breaker.acquirePermission();
+			breaker.onFailure();
+		}
+
+		assertEquals(State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	public void opensOnFailureRateAndFailsFast() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 60000);
+
+		call(breaker, true);
+		call(breaker, false);
+		call(breaker, true);
+		assertEquals(State.CLOSED, breaker.getState());
+		call(breaker, false);
+
+		assertEquals(State.OPEN, breaker.getState());
+		assertRejected(breaker);
+	}
+
+	@Test
+	public void halfOpenProbeClosesOnSuccess() throws Exception {
+		CircuitBreaker breaker = openBreaker(50);
+		Thread.sleep(100);
+
+		breaker.acquirePermission();
+		assertEquals(State.HALF_OPEN, breaker.getState());
+		// only one probe at a time
+		assertRejected(breaker);
+
+		breaker.onSuccess();
+		assertEquals(State.CLOSED, breaker.getState());
+		breaker.acquirePermission();
+	}
+
+	@Test
+	public void halfOpenProbeReopensOnFailure() throws Exception {
+		CircuitBreaker breaker = openBreaker(50);
+		Thread.sleep(100);
+
+		breaker.acquirePermission();
+		breaker.onFailure();
+
+		assertEquals(State.OPEN, breaker.getState());
+		assertRejected(breaker);
+	}
+
+	private CircuitBreaker openBreaker(long openMillis) throws CommunicationException {
+		CircuitBreaker breaker = new CircuitBreaker(2, 2, 100, openMillis);
+		call(breaker, true);
+		call(breaker, true);
+		assertEquals(State.OPEN, breaker.getState());
+		return breaker;
+	}
+
+	private void call(CircuitBreaker breaker, boolean failing) throws CommunicationException {
+		breaker.acquirePermission();
+		if(failing) {
+			breaker.onFailure();
+		} else {
+			breaker.onSuccess();
+		}
+	}
+
+	private void assertRejected(CircuitBreaker breaker) {
+		try {
+			breaker.acquirePermission();
+			fail("Call should be rejected");
+		} catch (CommunicationException e) {
+			// expected
+		}
+	}
+}